@@ -23,6 +23,7 @@ import eu.interedition.collatex.dekker.Match;
 import eu.interedition.collatex.needlemanwunsch.NeedlemanWunschAlgorithm;
 import eu.interedition.collatex.needlemanwunsch.NeedlemanWunschScorer;
 import eu.interedition.collatex.util.StreamUtil;
+import eu.interedition.collatex.util.VariantGraphRanking;
 import eu.interedition.collatex.util.VertexMatch;
 
 import java.util.*;
@@ -44,6 +45,7 @@ public interface CollationAlgorithm {
     abstract class Base implements CollationAlgorithm {
         protected final Logger LOG = Logger.getLogger(getClass().getName());
         protected Map<Token, VariantGraph.Vertex> witnessTokenVertices;
+        private VariantGraphRanking ranking;
 
         @Override
         public void collate(VariantGraph against, Iterable<Token>... witnesses) {
@@ -52,15 +54,42 @@ public interface CollationAlgorithm {
 
         @Override
         public void collate(VariantGraph against, List<? extends Iterable<Token>> witnesses) {
-            for (Iterable<Token> witness : witnesses) {
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.log(Level.FINE, "heap space: {0}/{1}", new Object[]{
-                            Runtime.getRuntime().totalMemory(),
-                            Runtime.getRuntime().maxMemory()
-                    });
+            try {
+                for (Iterable<Token> witness : witnesses) {
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.log(Level.FINE, "heap space: {0}/{1}", new Object[]{
+                                Runtime.getRuntime().totalMemory(),
+                                Runtime.getRuntime().maxMemory()
+                        });
+                    }
+                    collate(against, witness);
                 }
-                collate(against, witness);
+            } finally {
+                releaseRanking();
+            }
+        }
+
+        /**
+         * Ranks the given graph, reusing the ranking of previous calls as long as the graph has only been modified by
+         * {@link #merge(VariantGraph, Iterable, Map) merging} witnesses into it, which keeps the ranking up-to-date.
+         * <p>
+         * The returned ranking is therefore changed by subsequent merges; it must not be retained across them.
+         *
+         * @param graph the graph to be ranked
+         * @return the current ranking of the graph
+         */
+        protected VariantGraphRanking ranking(VariantGraph graph) {
+            if (ranking == null || !ranking.isCurrentFor(graph)) {
+                ranking = VariantGraphRanking.of(graph);
             }
+            return ranking;
+        }
+
+        /**
+         * Drops the ranking of the last graph, so that neither is kept alive by this algorithm once a collation is done.
+         */
+        protected void releaseRanking() {
+            ranking = null;
         }
 
         protected void merge(VariantGraph into, Iterable<Token> witnessTokens, Map<Token, VariantGraph.Vertex> alignments) {
@@ -72,6 +101,7 @@ public interface CollationAlgorithm {
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.log(Level.FINE, "{0} + {1}: Merge comparand into graph", new Object[]{into, witness});
             }
+            final VariantGraphRanking ranking = ranking(into);
             witnessTokenVertices = new HashMap<>();
             VariantGraph.Vertex last = into.getStart();
             final Set<Witness> witnessSet = Collections.singleton(witness);
@@ -88,9 +118,11 @@ public interface CollationAlgorithm {
                 witnessTokenVertices.put(token, matchingVertex);
 
                 into.connect(last, matchingVertex, witnessSet);
+                ranking.connected(last, matchingVertex);
                 last = matchingVertex;
             }
             into.connect(last, into.getEnd(), witnessSet);
+            ranking.connected(last, into.getEnd());
         }
 
         protected void mergeTranspositions(VariantGraph into, Iterable<SortedSet<VertexMatch.WithToken>> transpositions) {
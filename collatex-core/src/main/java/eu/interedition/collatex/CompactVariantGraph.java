@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A variant graph, which stores its vertices as dense integer identifiers.
+ * <p>
+ * Edges, the identifiers of their {@link WitnessSet witness labels} and the tokens of all vertices are kept in
+ * growable primitive arrays, indexed by vertex and edge identifiers. Vertex objects are mere handles; their {@link Vertex#incoming() incoming}/{@link
+ * Vertex#outgoing() outgoing} edges and {@link Vertex#tokens() tokens} are read-only views of the graph's arrays.
+ * <p>
+ * The public API is the same as the one of the default implementation, so that the graph can be passed to any
+ * collation algorithm in place of a {@link VariantGraph}.
+ */
+public class CompactVariantGraph extends VariantGraph {
+
+    private static final int NONE = -1;
+
+    // vertices
+    private Vertex[] vertices = new Vertex[16];
+    private int[] firstOut = new int[16];
+    private int[] firstIn = new int[16];
+    private int[] outDegree = new int[16];
+    private int[] inDegree = new int[16];
+    private int[] firstToken = new int[16];
+    private int[] lastToken = new int[16];
+    private int[] tokenCount = new int[16];
+
+    // edges
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private int[] nextOut = new int[16];
+    private int[] nextIn = new int[16];
+    private int[] edgeLabel = new int[16];
+    private int edges = 0;
+    private int freeEdge = NONE;
+
+    // tokens
+    private Token[] tokens = new Token[16];
+    private int[] nextToken = new int[16];
+    private int tokenArenaSize = 0;
+
+    private boolean startConnectedToEnd;
+
+    public CompactVariantGraph() {
+        super(graph -> new CompactVertex(graph));
+        register(start);
+        register(end);
+        addEdge(start.id(), end.id(), witnessOrdinals.empty());
+        startConnectedToEnd = true;
+    }
+
+    @Override
+    public Vertex add(Token token) {
+        final Vertex vertex = new CompactVertex(this);
+        register(vertex);
+        addToken(vertex.id(), token);
+        return vertex;
+    }
+
+    @Override
+    public void connect(Vertex from, Vertex to, Set<Witness> witnesses) {
+        if (from.equals(to)) {
+            throw new IllegalArgumentException();
+        }
+
+        final WitnessSet label = witnessOrdinals.of(witnesses);
+        final int edge = findEdge(from.id(), to.id());
+        if (edge == NONE) {
+            addEdge(from.id(), to.id(), label);
+        } else {
+            final WitnessSet previous = label(edge);
+            edgeLabel[edge] = witnessOrdinals.union(previous, label).id();
+            labelled(previous, label(edge));
+        }
+
+        if (startConnectedToEnd || (from.equals(start) && to.equals(end))) {
+            removeEdge(findEdge(start.id(), end.id()));
+            startConnectedToEnd = false;
+        }
+
+        modifications++;
+    }
+
+    @Override
+    public Set<Witness> witnesses() {
+        final List<WitnessSet> labels = new ArrayList<>();
+        for (int edge = firstOut[start.id()]; edge != NONE; edge = nextOut[edge]) {
+            labels.add(label(edge));
+        }
+        return witnessOrdinals.union(labels);
+    }
+
+    @Override
+    public long estimateHeapSize(long vertices, long edges, long tokens) {
+        return heapSize(vertices, edges, tokens);
+    }
+
+    /**
+     * @see VariantGraph#heapSize(long, long, long)
+     */
+    public static long heapSize(long vertices, long edges, long tokens) {
+        // vertex handle plus seven ints per vertex, five ints per edge, token reference and link per token
+        return vertices * 64 + edges * 20 + tokens * 8;
+    }
+
+    @Override
+    protected void absorb(Vertex vertex, Vertex successor) {
+        final int v = vertex.id();
+        final int s = successor.id();
+        removeEdge(findEdge(v, s));
+        for (int edge = firstOut[s]; edge != NONE; ) {
+            final int next = nextOut[edge];
+            edgeFrom[edge] = v;
+            nextOut[edge] = firstOut[v];
+            firstOut[v] = edge;
+            outDegree[v]++;
+            edge = next;
+        }
+        firstOut[s] = NONE;
+        outDegree[s] = 0;
+        absorbed(successor);
+
+        modifications++;
+    }
+
+    /**
+     * @return the number of edges currently in this graph
+     */
+    public int edges() {
+        return edges;
+    }
+
+    private void register(Vertex vertex) {
+        final int id = vertex.id();
+        if (id >= vertices.length) {
+            final int capacity = Math.max(id + 1, vertices.length * 2);
+            vertices = Arrays.copyOf(vertices, capacity);
+            firstOut = Arrays.copyOf(firstOut, capacity);
+            firstIn = Arrays.copyOf(firstIn, capacity);
+            outDegree = Arrays.copyOf(outDegree, capacity);
+            inDegree = Arrays.copyOf(inDegree, capacity);
+            firstToken = Arrays.copyOf(firstToken, capacity);
+            lastToken = Arrays.copyOf(lastToken, capacity);
+            tokenCount = Arrays.copyOf(tokenCount, capacity);
+        }
+        vertices[id] = vertex;
+        firstOut[id] = NONE;
+        firstIn[id] = NONE;
+        firstToken[id] = NONE;
+        lastToken[id] = NONE;
+    }
+
+    private void addToken(int vertex, Token token) {
+        if (tokenArenaSize == tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokenArenaSize * 2);
+            nextToken = Arrays.copyOf(nextToken, tokenArenaSize * 2);
+        }
+        final int t = tokenArenaSize++;
+        tokenReferences++;
+        tokens[t] = token;
+        nextToken[t] = NONE;
+        if (lastToken[vertex] == NONE) {
+            firstToken[vertex] = t;
+        } else {
+            nextToken[lastToken[vertex]] = t;
+        }
+        lastToken[vertex] = t;
+        tokenCount[vertex]++;
+    }
+
+    private int findEdge(int from, int to) {
+        for (int edge = firstOut[from]; edge != NONE; edge = nextOut[edge]) {
+            if (edgeTo[edge] == to) {
+                return edge;
+            }
+        }
+        return NONE;
+    }
+
+    private void addEdge(int from, int to, WitnessSet label) {
+        final int edge;
+        if (freeEdge != NONE) {
+            edge = freeEdge;
+            freeEdge = nextOut[edge];
+        } else {
+            edge = edges;
+            if (edge == edgeFrom.length) {
+                final int capacity = edge * 2;
+                edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+                edgeTo = Arrays.copyOf(edgeTo, capacity);
+                nextOut = Arrays.copyOf(nextOut, capacity);
+                nextIn = Arrays.copyOf(nextIn, capacity);
+                edgeLabel = Arrays.copyOf(edgeLabel, capacity);
+            }
+        }
+        edges++;
+
+        edgeFrom[edge] = from;
+        edgeTo[edge] = to;
+        nextOut[edge] = firstOut[from];
+        firstOut[from] = edge;
+        outDegree[from]++;
+        nextIn[edge] = firstIn[to];
+        firstIn[to] = edge;
+        inDegree[to]++;
+        edgeLabel[edge] = label.id();
+        labelled(null, label);
+    }
+
+    private void removeEdge(int edge) {
+        if (edge == NONE) {
+            return;
+        }
+        final int from = edgeFrom[edge];
+        final int to = edgeTo[edge];
+        unlinked(label(edge));
+
+        if (firstOut[from] == edge) {
+            firstOut[from] = nextOut[edge];
+        } else {
+            int prev = firstOut[from];
+            while (nextOut[prev] != edge) {
+                prev = nextOut[prev];
+            }
+            nextOut[prev] = nextOut[edge];
+        }
+        outDegree[from]--;
+
+        if (firstIn[to] == edge) {
+            firstIn[to] = nextIn[edge];
+        } else {
+            int prev = firstIn[to];
+            while (nextIn[prev] != edge) {
+                prev = nextIn[prev];
+            }
+            nextIn[prev] = nextIn[edge];
+        }
+        inDegree[to]--;
+
+        nextOut[edge] = freeEdge;
+        freeEdge = edge;
+        edges--;
+    }
+
+    private WitnessSet label(int edge) {
+        return witnessOrdinals.get(edgeLabel[edge]);
+    }
+
+    /**
+     * A vertex handle, whose tokens and edges are stored in the arrays of the graph.
+     */
+    static class CompactVertex extends Vertex {
+
+        CompactVertex(VariantGraph graph) {
+            super(graph, null, null, null);
+        }
+
+        private CompactVariantGraph compactGraph() {
+            return (CompactVariantGraph) graph();
+        }
+
+        @Override
+        public Map<Vertex, Set<Witness>> incoming() {
+            return new Adjacency(compactGraph(), id(), false);
+        }
+
+        @Override
+        public Map<Vertex, Set<Witness>> outgoing() {
+            return new Adjacency(compactGraph(), id(), true);
+        }
+
+        @Override
+        public Set<Token> tokens() {
+            return new Tokens(compactGraph(), id());
+        }
+
+        @Override
+        public Set<Witness> witnesses() {
+            final CompactVariantGraph graph = compactGraph();
+            final List<WitnessSet> labels = new ArrayList<>();
+            for (int edge = graph.firstIn[id()]; edge != NONE; edge = graph.nextIn[edge]) {
+                labels.add(graph.label(edge));
+            }
+            return graph.witnessOrdinals.union(labels);
+        }
+
+        @Override
+        public void add(Iterable<Token> tokens) {
+            final CompactVariantGraph graph = compactGraph();
+            final Set<Token> existing = tokens();
+            for (Token token : tokens) {
+                if (!existing.contains(token)) {
+                    graph.addToken(id(), token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read-only view of the incoming or outgoing edges of a vertex.
+     */
+    static class Adjacency extends AbstractMap<Vertex, Set<Witness>> {
+        private final CompactVariantGraph graph;
+        private final int vertex;
+        private final boolean outgoing;
+
+        Adjacency(CompactVariantGraph graph, int vertex, boolean outgoing) {
+            this.graph = graph;
+            this.vertex = vertex;
+            this.outgoing = outgoing;
+        }
+
+        private int firstEdge() {
+            return (outgoing ? graph.firstOut[vertex] : graph.firstIn[vertex]);
+        }
+
+        private int nextEdge(int edge) {
+            return (outgoing ? graph.nextOut[edge] : graph.nextIn[edge]);
+        }
+
+        private int other(int edge) {
+            return (outgoing ? graph.edgeTo[edge] : graph.edgeFrom[edge]);
+        }
+
+        private int find(Object key) {
+            if (!(key instanceof CompactVertex) || ((CompactVertex) key).graph() != graph) {
+                return NONE;
+            }
+            final int id = ((CompactVertex) key).id();
+            for (int edge = firstEdge(); edge != NONE; edge = nextEdge(edge)) {
+                if (other(edge) == id) {
+                    return edge;
+                }
+            }
+            return NONE;
+        }
+
+        @Override
+        public int size() {
+            return (outgoing ? graph.outDegree[vertex] : graph.inDegree[vertex]);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) != NONE;
+        }
+
+        @Override
+        public Set<Witness> get(Object key) {
+            final int edge = find(key);
+            return (edge == NONE ? null : graph.label(edge));
+        }
+
+        @Override
+        public Set<Entry<Vertex, Set<Witness>>> entrySet() {
+            return new AbstractSet<Entry<Vertex, Set<Witness>>>() {
+                @Override
+                public Iterator<Entry<Vertex, Set<Witness>>> iterator() {
+                    return new Iterator<Entry<Vertex, Set<Witness>>>() {
+                        private int edge = firstEdge();
+
+                        @Override
+                        public boolean hasNext() {
+                            return edge != NONE;
+                        }
+
+                        @Override
+                        public Entry<Vertex, Set<Witness>> next() {
+                            if (edge == NONE) {
+                                throw new NoSuchElementException();
+                            }
+                            final Entry<Vertex, Set<Witness>> entry = new SimpleImmutableEntry<>(
+                                graph.vertices[other(edge)],
+                                graph.label(edge)
+                            );
+                            edge = nextEdge(edge);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Adjacency.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Read-only view of the tokens of a vertex.
+     */
+    static class Tokens extends AbstractSet<Token> {
+        private final CompactVariantGraph graph;
+        private final int vertex;
+
+        Tokens(CompactVariantGraph graph, int vertex) {
+            this.graph = graph;
+            this.vertex = vertex;
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            return new Iterator<Token>() {
+                private int token = graph.firstToken[vertex];
+
+                @Override
+                public boolean hasNext() {
+                    return token != NONE;
+                }
+
+                @Override
+                public Token next() {
+                    if (token == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    final Token next = graph.tokens[token];
+                    token = graph.nextToken[token];
+                    return next;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return graph.tokenCount[vertex];
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.util.VariantGraphRanking;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only snapshot of a variant graph, as created by {@link VariantGraph#freeze()}.
+ * <p>
+ * Vertices, edges and tokens are stored in arrays in topological order, and everything serializers typically derive
+ * from a graph – the vertex order, the ranking, the witnesses of each vertex and the witnesses of the graph sorted by
+ * sigil – is computed once when the snapshot is taken. Reading a snapshot does not modify any state, so that it can
+ * be read, e.g. serialized into several formats, by multiple threads concurrently.
+ * <p>
+ * All modifications, including {@link VariantGraph#JOIN joining}, fail with an {@link UnsupportedOperationException};
+ * graphs have to be joined before they are frozen.
+ */
+public class FrozenVariantGraph extends VariantGraph {
+
+    private final Vertex[] vertices;
+    private final int[] positions;
+    private final List<Vertex> order;
+
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final WitnessSet[] outLabels;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final WitnessSet[] inLabels;
+
+    private final int[] tokenOffsets;
+    private final Token[] tokens;
+
+    private final WitnessSet[] vertexWitnesses;
+    private final Set<Witness> witnesses;
+    private final VariantGraphRanking ranking;
+
+    FrozenVariantGraph(VariantGraph graph) {
+        super(g -> new FrozenVertex(g));
+
+        // keep the witness ordinals, on which the order of witnesses in sets depends
+        for (int ordinal = 0; ordinal < graph.witnessOrdinals().size(); ordinal++) {
+            witnessOrdinals.ordinal(graph.witnessOrdinals().witness(ordinal));
+        }
+
+        final List<Vertex> source = new ArrayList<>();
+        graph.vertices().forEach(source::add);
+        final int size = source.size();
+
+        // start and end have been created by the super constructor; the others follow in topological order
+        final Vertex[] bySourceId = new Vertex[graph.vertexIds()];
+        final Vertex[] topological = new Vertex[size];
+        for (int v = 0; v < size; v++) {
+            final Vertex sourceVertex = source.get(v);
+            final Vertex vertex = (sourceVertex.equals(graph.getStart()) ? start : (sourceVertex.equals(graph.getEnd()) ? end : new FrozenVertex(this)));
+            bySourceId[sourceVertex.id()] = vertex;
+            topological[v] = vertex;
+        }
+
+        this.vertices = new Vertex[size];
+        this.positions = new int[size];
+        for (int v = 0; v < size; v++) {
+            vertices[topological[v].id()] = topological[v];
+            positions[topological[v].id()] = v;
+        }
+        this.order = Collections.unmodifiableList(Arrays.asList(topological));
+
+        int edges = 0;
+        int tokenCount = 0;
+        for (Vertex sourceVertex : source) {
+            edges += sourceVertex.outgoing().size();
+            tokenCount += sourceVertex.tokens().size();
+        }
+        this.edgeCount = edges;
+        this.tokenReferences = tokenCount;
+
+        this.outOffsets = new int[size + 1];
+        this.outTargets = new int[edges];
+        this.outLabels = new WitnessSet[edges];
+        this.inOffsets = new int[size + 1];
+        this.inSources = new int[edges];
+        this.inLabels = new WitnessSet[edges];
+        this.tokenOffsets = new int[size + 1];
+        this.tokens = new Token[tokenCount];
+
+        // vertices are stored by id, so lay out the slices of the edge and token arrays in id order
+        int out = 0;
+        int in = 0;
+        int token = 0;
+        for (int v = 0; v < size; v++) {
+            final Vertex sourceVertex = source.get(positions[v]);
+            outOffsets[v] = out;
+            for (Map.Entry<Vertex, Set<Witness>> edge : sourceVertex.outgoing().entrySet()) {
+                outTargets[out] = bySourceId[edge.getKey().id()].id();
+                outLabels[out] = witnessOrdinals.of(edge.getValue());
+                edgeWitnesses += outLabels[out++].size();
+            }
+            inOffsets[v] = in;
+            for (Map.Entry<Vertex, Set<Witness>> edge : sourceVertex.incoming().entrySet()) {
+                inSources[in] = bySourceId[edge.getKey().id()].id();
+                inLabels[in++] = witnessOrdinals.of(edge.getValue());
+            }
+            tokenOffsets[v] = token;
+            for (Token t : sourceVertex.tokens()) {
+                tokens[token++] = t;
+            }
+        }
+        outOffsets[size] = out;
+        inOffsets[size] = in;
+        tokenOffsets[size] = token;
+
+        this.vertexWitnesses = new WitnessSet[size];
+        for (int v = 0; v < size; v++) {
+            WitnessSet vertexWitnesses = witnessOrdinals.empty();
+            for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+                vertexWitnesses = witnessOrdinals.union(vertexWitnesses, inLabels[e]);
+            }
+            this.vertexWitnesses[v] = vertexWitnesses;
+        }
+
+        WitnessSet graphWitnesses = witnessOrdinals.empty();
+        for (int e = outOffsets[start.id()]; e < outOffsets[start.id() + 1]; e++) {
+            graphWitnesses = witnessOrdinals.union(graphWitnesses, outLabels[e]);
+        }
+        final List<Witness> sorted = new ArrayList<>(graphWitnesses);
+        sorted.sort(Witness.SIGIL_COMPARATOR);
+        this.witnesses = Collections.unmodifiableSet(new LinkedHashSet<>(sorted));
+
+        for (Set<Vertex> transposition : graph.transpositions()) {
+            final Set<Vertex> transposed = new LinkedHashSet<>();
+            for (Vertex vertex : transposition) {
+                transposed.add(bySourceId[vertex.id()]);
+            }
+            transpositionIndex.register(transposed);
+        }
+
+        this.ranking = VariantGraphRanking.of(this);
+    }
+
+    /**
+     * @return the precomputed ranking of this graph
+     */
+    public VariantGraphRanking ranking() {
+        return ranking;
+    }
+
+    /**
+     * @return the statistics of this graph, including its maximum rank as the graph has been ranked already
+     */
+    @Override
+    public VariantGraphStatistics statistics() {
+        return new VariantGraphStatistics(this, vertices.length, edgeCount, tokenReferences, edgeWitnesses, rank(end));
+    }
+
+    @Override
+    public long estimateHeapSize(long vertices, long edges, long tokens) {
+        // vertex handle, offsets, position and witnesses per vertex, target/source and label in both directions per edge
+        return vertices * 64 + edges * 16 + tokens * 4;
+    }
+
+    /**
+     * @return the rank of the given vertex in the {@link #ranking() ranking} of this graph
+     */
+    public int rank(Vertex vertex) {
+        return ranking.apply(vertex);
+    }
+
+    /**
+     * @return the position of the given vertex in the topological order of this graph, in which {@link #vertices()}
+     *         are traversed
+     */
+    public int position(Vertex vertex) {
+        return positions[vertex.id()];
+    }
+
+    /**
+     * @return the vertex with the given identifier
+     */
+    public Vertex vertex(int id) {
+        return vertices[id];
+    }
+
+    @Override
+    public Iterable<Vertex> vertices() {
+        return order;
+    }
+
+    /**
+     * @return the witnesses of this graph, ordered by their sigils
+     */
+    @Override
+    public Set<Witness> witnesses() {
+        return witnesses;
+    }
+
+    @Override
+    public FrozenVariantGraph freeze() {
+        return this;
+    }
+
+    @Override
+    public Vertex add(Token token) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void connect(Vertex from, Vertex to, Set<Witness> witnesses) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<Vertex> transpose(Set<Vertex> vertices) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void absorb(Vertex vertex, Vertex successor) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A vertex handle, whose tokens and edges are stored in the arrays of the snapshot.
+     */
+    static class FrozenVertex extends Vertex {
+
+        FrozenVertex(VariantGraph graph) {
+            super(graph, null, null, null);
+        }
+
+        private FrozenVariantGraph frozenGraph() {
+            return (FrozenVariantGraph) graph();
+        }
+
+        @Override
+        public Map<Vertex, Set<Witness>> incoming() {
+            final FrozenVariantGraph graph = frozenGraph();
+            return new Edges(graph, graph.inOffsets[id()], graph.inOffsets[id() + 1], graph.inSources, graph.inLabels);
+        }
+
+        @Override
+        public Map<Vertex, Set<Witness>> outgoing() {
+            final FrozenVariantGraph graph = frozenGraph();
+            return new Edges(graph, graph.outOffsets[id()], graph.outOffsets[id() + 1], graph.outTargets, graph.outLabels);
+        }
+
+        @Override
+        public Set<Token> tokens() {
+            final FrozenVariantGraph graph = frozenGraph();
+            return new Tokens(graph.tokens, graph.tokenOffsets[id()], graph.tokenOffsets[id() + 1]);
+        }
+
+        @Override
+        public Set<Witness> witnesses() {
+            return frozenGraph().vertexWitnesses[id()];
+        }
+
+        @Override
+        public void add(Iterable<Token> tokens) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Read-only view of a slice of the edge arrays, mapping adjacent vertices to edge labels.
+     */
+    static class Edges extends AbstractMap<Vertex, Set<Witness>> {
+        private final FrozenVariantGraph graph;
+        private final int from;
+        private final int to;
+        private final int[] vertices;
+        private final WitnessSet[] labels;
+
+        Edges(FrozenVariantGraph graph, int from, int to, int[] vertices, WitnessSet[] labels) {
+            this.graph = graph;
+            this.from = from;
+            this.to = to;
+            this.vertices = vertices;
+            this.labels = labels;
+        }
+
+        private int find(Object key) {
+            if (!(key instanceof FrozenVertex) || ((FrozenVertex) key).graph() != graph) {
+                return -1;
+            }
+            final int id = ((FrozenVertex) key).id();
+            for (int e = from; e < to; e++) {
+                if (vertices[e] == id) {
+                    return e;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public Set<Witness> get(Object key) {
+            final int e = find(key);
+            return (e < 0 ? null : labels[e]);
+        }
+
+        @Override
+        public Set<Entry<Vertex, Set<Witness>>> entrySet() {
+            return new AbstractSet<Entry<Vertex, Set<Witness>>>() {
+                @Override
+                public Iterator<Entry<Vertex, Set<Witness>>> iterator() {
+                    return new Iterator<Entry<Vertex, Set<Witness>>>() {
+                        private int e = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return e < to;
+                        }
+
+                        @Override
+                        public Entry<Vertex, Set<Witness>> next() {
+                            if (e == to) {
+                                throw new NoSuchElementException();
+                            }
+                            final Entry<Vertex, Set<Witness>> entry = new SimpleImmutableEntry<>(graph.vertices[vertices[e]], labels[e]);
+                            e++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Edges.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Read-only view of a slice of the token array.
+     */
+    static class Tokens extends AbstractSet<Token> {
+        private final Token[] tokens;
+        private final int from;
+        private final int to;
+
+        Tokens(Token[] tokens, int from, int to) {
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(tokens).subList(from, to)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,729 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.simple.SimpleWitness;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A variant graph, which keeps its vertices, edges and token references in memory-mapped files.
+ * <p>
+ * The graph is laid out like a {@link CompactVariantGraph}, but its integer tables live in files of a given directory,
+ * which are mapped into memory chunk by chunk as they grow. The heap only holds a handle per vertex, the interned
+ * {@link WitnessSet witness labels} and the token sequences of the witnesses, which tokens are referenced by.
+ * <p>
+ * Tokens are stored as references to the position of a token in the sequence of its witness. Positions are assigned in
+ * the order in which tokens of a witness are added to the graph, which is the order of the witness, as collation
+ * algorithms merge witnesses token by token. Once {@link #close() closed}, a graph can be {@link #open(Path, Iterable)
+ * reopened} from its directory, resolving token references against the token sequences of the very same witnesses.
+ */
+public class MappedVariantGraph extends VariantGraph implements Closeable {
+
+    private static final int NONE = -1;
+    private static final int MAGIC = 0x43585647;
+    private static final int VERSION = 2;
+
+    // vertex records
+    private static final int FIRST_OUT = 0;
+    private static final int FIRST_IN = 1;
+    private static final int OUT_DEGREE = 2;
+    private static final int IN_DEGREE = 3;
+    private static final int FIRST_TOKEN = 4;
+    private static final int LAST_TOKEN = 5;
+    private static final int TOKEN_COUNT = 6;
+    private static final int VERTEX_RECORD = 7;
+
+    // edge records
+    private static final int FROM = 0;
+    private static final int TO = 1;
+    private static final int NEXT_OUT = 2;
+    private static final int NEXT_IN = 3;
+    private static final int LABEL = 4;
+    private static final int EDGE_RECORD = 5;
+
+    // token records
+    private static final int WITNESS = 0;
+    private static final int POSITION = 1;
+    private static final int NEXT_TOKEN = 2;
+    private static final int TOKEN_RECORD = 3;
+
+    private final Path directory;
+    private final MappedInts vertexTable;
+    private final MappedInts edgeTable;
+    private final MappedInts tokenTable;
+
+    private Vertex[] vertices = new Vertex[16];
+    private final List<List<Token>> witnessTokens = new ArrayList<>();
+    private int edges = 0;
+    private int edgeRecords = 0;
+    private int freeEdge = NONE;
+    private int tokenRecords = 0;
+    private boolean startConnectedToEnd;
+
+    /**
+     * Creates an empty graph, whose files are stored in the given directory. Existing files are overwritten.
+     *
+     * @param directory the directory to store the graph in, created if necessary
+     */
+    public MappedVariantGraph(Path directory) throws IOException {
+        this(directory, true);
+        register(start);
+        register(end);
+        addEdge(start.id(), end.id(), witnessOrdinals.empty());
+        startConnectedToEnd = true;
+    }
+
+    private MappedVariantGraph(Path directory, boolean create) throws IOException {
+        super(graph -> new MappedVertex(graph));
+        this.directory = Files.createDirectories(directory);
+        this.vertexTable = new MappedInts(directory.resolve("vertices"), create);
+        this.edgeTable = new MappedInts(directory.resolve("edges"), create);
+        this.tokenTable = new MappedInts(directory.resolve("tokens"), create);
+    }
+
+    /**
+     * Reopens a graph, which has been stored in the given directory and {@link #close() closed}.
+     *
+     * @param directory the directory the graph has been stored in
+     * @param witnesses the token sequences of the graph's witnesses, which stored token references are resolved against;
+     *                  stored witnesses without tokens are restored as {@link SimpleWitness witnesses} of the same sigil
+     * @return the reopened graph, which can be read as well as extended
+     */
+    public static MappedVariantGraph open(Path directory, Iterable<? extends Iterable<Token>> witnesses) throws IOException {
+        final Map<String, List<Token>> tokensBySigil = new HashMap<>();
+        final Map<String, Witness> witnessesBySigil = new HashMap<>();
+        for (Iterable<Token> witness : witnesses) {
+            final List<Token> tokens = new ArrayList<>();
+            witness.forEach(tokens::add);
+            if (!tokens.isEmpty()) {
+                final Witness w = tokens.get(0).getWitness();
+                witnessesBySigil.put(w.getSigil(), w);
+                tokensBySigil.put(w.getSigil(), tokens);
+            }
+        }
+
+        final MappedVariantGraph graph = new MappedVariantGraph(directory, false);
+        try (DataInputStream meta = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve("graph"))))) {
+            if (meta.readInt() != MAGIC || meta.readInt() != VERSION) {
+                throw new IOException(directory + ": not a variant graph store");
+            }
+            final int vertexCount = meta.readInt();
+            graph.edges = meta.readInt();
+            graph.edgeRecords = meta.readInt();
+            graph.freeEdge = meta.readInt();
+            graph.tokenRecords = meta.readInt();
+            graph.startConnectedToEnd = meta.readBoolean();
+            graph.edgeCount = graph.edges;
+            graph.absorbedVertices = meta.readInt();
+            graph.tokenReferences = meta.readInt();
+            graph.edgeWitnesses = meta.readLong();
+
+            for (int w = 0, wc = meta.readInt(); w < wc; w++) {
+                final String sigil = meta.readUTF();
+                // witnesses without tokens cannot be told apart by their (empty) token sequences
+                final Witness witness = witnessesBySigil.computeIfAbsent(sigil, SimpleWitness::new);
+                graph.witnessOrdinals.ordinal(witness);
+                graph.witnessTokens.add(tokensBySigil.getOrDefault(sigil, new ArrayList<>()));
+            }
+            for (int s = 1, sc = meta.readInt(); s < sc; s++) {
+                final Set<Witness> set = new HashSet<>();
+                for (int o = 0, oc = meta.readInt(); o < oc; o++) {
+                    set.add(graph.witnessOrdinals.witness(meta.readInt()));
+                }
+                if (graph.witnessOrdinals.of(set).id() != s) {
+                    throw new IOException(directory + ": inconsistent witness sets");
+                }
+            }
+
+            graph.handle(graph.start);
+            graph.handle(graph.end);
+            for (int v = 2; v < vertexCount; v++) {
+                graph.handle(new MappedVertex(graph));
+            }
+
+            for (int t = 0, tc = meta.readInt(); t < tc; t++) {
+                final Set<Vertex> transposed = new HashSet<>();
+                for (int v = 0, vc = meta.readInt(); v < vc; v++) {
+                    transposed.add(graph.vertices[meta.readInt()]);
+                }
+                graph.transpositionIndex.register(transposed);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @return the directory this graph is stored in
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of edges currently in this graph
+     */
+    public int edges() {
+        return edges;
+    }
+
+    @Override
+    public Vertex add(Token token) {
+        final Vertex vertex = new MappedVertex(this);
+        register(vertex);
+        addToken(vertex.id(), token);
+        return vertex;
+    }
+
+    @Override
+    public void connect(Vertex from, Vertex to, Set<Witness> witnesses) {
+        if (from.equals(to)) {
+            throw new IllegalArgumentException();
+        }
+
+        final WitnessSet label = witnessOrdinals.of(witnesses);
+        final int edge = findEdge(from.id(), to.id());
+        if (edge == NONE) {
+            addEdge(from.id(), to.id(), label);
+        } else {
+            final WitnessSet previous = label(edge);
+            edgeTable.set(edge, EDGE_RECORD, LABEL, witnessOrdinals.union(previous, label).id());
+            labelled(previous, label(edge));
+        }
+
+        if (startConnectedToEnd || (from.equals(start) && to.equals(end))) {
+            removeEdge(findEdge(start.id(), end.id()));
+            startConnectedToEnd = false;
+        }
+
+        modifications++;
+    }
+
+    @Override
+    public Set<Witness> witnesses() {
+        final List<WitnessSet> labels = new ArrayList<>();
+        for (int edge = vertex(start.id(), FIRST_OUT); edge != NONE; edge = edgeTable.get(edge, EDGE_RECORD, NEXT_OUT)) {
+            labels.add(label(edge));
+        }
+        return witnessOrdinals.union(labels);
+    }
+
+    /**
+     * Only vertex handles and token references are kept on the heap; records in mapped files are not accounted for.
+     */
+    @Override
+    public long estimateHeapSize(long vertices, long edges, long tokens) {
+        return heapSize(vertices, edges, tokens);
+    }
+
+    /**
+     * @see #estimateHeapSize(long, long, long)
+     */
+    public static long heapSize(long vertices, long edges, long tokens) {
+        return vertices * 36 + tokens * 4;
+    }
+
+    @Override
+    protected void absorb(Vertex vertex, Vertex successor) {
+        final int v = vertex.id();
+        final int s = successor.id();
+        removeEdge(findEdge(v, s));
+        for (int edge = vertex(s, FIRST_OUT); edge != NONE; ) {
+            final int next = edgeTable.get(edge, EDGE_RECORD, NEXT_OUT);
+            edgeTable.set(edge, EDGE_RECORD, FROM, v);
+            edgeTable.set(edge, EDGE_RECORD, NEXT_OUT, vertex(v, FIRST_OUT));
+            vertexTable.set(v, VERTEX_RECORD, FIRST_OUT, edge);
+            vertexTable.set(v, VERTEX_RECORD, OUT_DEGREE, vertex(v, OUT_DEGREE) + 1);
+            edge = next;
+        }
+        vertexTable.set(s, VERTEX_RECORD, FIRST_OUT, NONE);
+        vertexTable.set(s, VERTEX_RECORD, OUT_DEGREE, 0);
+        absorbed(successor);
+
+        modifications++;
+    }
+
+    /**
+     * Writes the state of this graph, which is not kept in its mapped tables, to its directory and flushes the tables,
+     * so that the graph can be {@link #open(Path, Iterable) reopened}.
+     */
+    public void flush() throws IOException {
+        try (DataOutputStream meta = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve("graph"))))) {
+            meta.writeInt(MAGIC);
+            meta.writeInt(VERSION);
+            meta.writeInt(vertexIds());
+            meta.writeInt(edges);
+            meta.writeInt(edgeRecords);
+            meta.writeInt(freeEdge);
+            meta.writeInt(tokenRecords);
+            meta.writeBoolean(startConnectedToEnd);
+            meta.writeInt(absorbedVertices);
+            meta.writeInt(tokenReferences);
+            meta.writeLong(edgeWitnesses);
+
+            meta.writeInt(witnessOrdinals.size());
+            for (int w = 0; w < witnessOrdinals.size(); w++) {
+                meta.writeUTF(witnessOrdinals.witness(w).getSigil());
+            }
+            // the empty set is interned first by any ordinals
+            meta.writeInt(witnessOrdinals.sets());
+            for (int s = 1; s < witnessOrdinals.sets(); s++) {
+                final WitnessSet set = witnessOrdinals.get(s);
+                meta.writeInt(set.size());
+                for (int ordinal = set.nextOrdinal(0); ordinal >= 0; ordinal = set.nextOrdinal(ordinal + 1)) {
+                    meta.writeInt(ordinal);
+                }
+            }
+
+            meta.writeInt(transpositionIndex.size());
+            for (Set<Vertex> transposition : transpositionIndex.all()) {
+                meta.writeInt(transposition.size());
+                for (Vertex vertex : transposition) {
+                    meta.writeInt(vertex.id());
+                }
+            }
+        }
+        vertexTable.force();
+        edgeTable.force();
+        tokenTable.force();
+    }
+
+    /**
+     * {@link #flush() Flushes} this graph and releases its files.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        vertexTable.close();
+        edgeTable.close();
+        tokenTable.close();
+    }
+
+    /**
+     * Releases the files of this graph without flushing it and deletes them along with its directory, if the latter is
+     * empty then; meant for graphs in temporary directories, which are not to be reopened.
+     */
+    public void delete() throws IOException {
+        vertexTable.close();
+        edgeTable.close();
+        tokenTable.close();
+        for (String file : new String[] { "vertices", "edges", "tokens", "graph" }) {
+            Files.deleteIfExists(directory.resolve(file));
+        }
+        try (DirectoryStream<Path> remaining = Files.newDirectoryStream(directory)) {
+            if (remaining.iterator().hasNext()) {
+                return;
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private int vertex(int vertex, int field) {
+        return vertexTable.get(vertex, VERTEX_RECORD, field);
+    }
+
+    private void handle(Vertex vertex) {
+        final int id = vertex.id();
+        if (id >= vertices.length) {
+            vertices = Arrays.copyOf(vertices, Math.max(id + 1, vertices.length * 2));
+        }
+        vertices[id] = vertex;
+    }
+
+    private void register(Vertex vertex) {
+        handle(vertex);
+        final int id = vertex.id();
+        vertexTable.set(id, VERTEX_RECORD, FIRST_OUT, NONE);
+        vertexTable.set(id, VERTEX_RECORD, FIRST_IN, NONE);
+        vertexTable.set(id, VERTEX_RECORD, OUT_DEGREE, 0);
+        vertexTable.set(id, VERTEX_RECORD, IN_DEGREE, 0);
+        vertexTable.set(id, VERTEX_RECORD, FIRST_TOKEN, NONE);
+        vertexTable.set(id, VERTEX_RECORD, LAST_TOKEN, NONE);
+        vertexTable.set(id, VERTEX_RECORD, TOKEN_COUNT, 0);
+    }
+
+    private void addToken(int vertex, Token token) {
+        final int ordinal = witnessOrdinals.ordinal(token.getWitness());
+        while (witnessTokens.size() <= ordinal) {
+            witnessTokens.add(new ArrayList<>());
+        }
+        final List<Token> tokens = witnessTokens.get(ordinal);
+        addTokenRecord(vertex, ordinal, tokens.size());
+        tokens.add(token);
+    }
+
+    private void addTokenRecord(int vertex, int ordinal, int position) {
+        final int t = tokenRecords++;
+        tokenReferences++;
+        tokenTable.set(t, TOKEN_RECORD, WITNESS, ordinal);
+        tokenTable.set(t, TOKEN_RECORD, POSITION, position);
+        tokenTable.set(t, TOKEN_RECORD, NEXT_TOKEN, NONE);
+
+        final int last = vertex(vertex, LAST_TOKEN);
+        if (last == NONE) {
+            vertexTable.set(vertex, VERTEX_RECORD, FIRST_TOKEN, t);
+        } else {
+            tokenTable.set(last, TOKEN_RECORD, NEXT_TOKEN, t);
+        }
+        vertexTable.set(vertex, VERTEX_RECORD, LAST_TOKEN, t);
+        vertexTable.set(vertex, VERTEX_RECORD, TOKEN_COUNT, vertex(vertex, TOKEN_COUNT) + 1);
+    }
+
+    private Token token(int t) {
+        return witnessTokens.get(tokenTable.get(t, TOKEN_RECORD, WITNESS)).get(tokenTable.get(t, TOKEN_RECORD, POSITION));
+    }
+
+    private int findEdge(int from, int to) {
+        for (int edge = vertex(from, FIRST_OUT); edge != NONE; edge = edgeTable.get(edge, EDGE_RECORD, NEXT_OUT)) {
+            if (edgeTable.get(edge, EDGE_RECORD, TO) == to) {
+                return edge;
+            }
+        }
+        return NONE;
+    }
+
+    private void addEdge(int from, int to, WitnessSet label) {
+        final int edge;
+        if (freeEdge != NONE) {
+            edge = freeEdge;
+            freeEdge = edgeTable.get(edge, EDGE_RECORD, NEXT_OUT);
+        } else {
+            edge = edgeRecords++;
+        }
+        edges++;
+
+        edgeTable.set(edge, EDGE_RECORD, FROM, from);
+        edgeTable.set(edge, EDGE_RECORD, TO, to);
+        edgeTable.set(edge, EDGE_RECORD, NEXT_OUT, vertex(from, FIRST_OUT));
+        vertexTable.set(from, VERTEX_RECORD, FIRST_OUT, edge);
+        vertexTable.set(from, VERTEX_RECORD, OUT_DEGREE, vertex(from, OUT_DEGREE) + 1);
+        edgeTable.set(edge, EDGE_RECORD, NEXT_IN, vertex(to, FIRST_IN));
+        vertexTable.set(to, VERTEX_RECORD, FIRST_IN, edge);
+        vertexTable.set(to, VERTEX_RECORD, IN_DEGREE, vertex(to, IN_DEGREE) + 1);
+        edgeTable.set(edge, EDGE_RECORD, LABEL, label.id());
+        labelled(null, label);
+    }
+
+    private void removeEdge(int edge) {
+        if (edge == NONE) {
+            return;
+        }
+        unlinked(label(edge));
+        unlink(edge, edgeTable.get(edge, EDGE_RECORD, FROM), FIRST_OUT, NEXT_OUT, OUT_DEGREE);
+        unlink(edge, edgeTable.get(edge, EDGE_RECORD, TO), FIRST_IN, NEXT_IN, IN_DEGREE);
+
+        edgeTable.set(edge, EDGE_RECORD, NEXT_OUT, freeEdge);
+        freeEdge = edge;
+        edges--;
+    }
+
+    private void unlink(int edge, int vertex, int first, int next, int degree) {
+        final int firstEdge = vertex(vertex, first);
+        if (firstEdge == edge) {
+            vertexTable.set(vertex, VERTEX_RECORD, first, edgeTable.get(edge, EDGE_RECORD, next));
+        } else {
+            int prev = firstEdge;
+            while (edgeTable.get(prev, EDGE_RECORD, next) != edge) {
+                prev = edgeTable.get(prev, EDGE_RECORD, next);
+            }
+            edgeTable.set(prev, EDGE_RECORD, next, edgeTable.get(edge, EDGE_RECORD, next));
+        }
+        vertexTable.set(vertex, VERTEX_RECORD, degree, vertex(vertex, degree) - 1);
+    }
+
+    private WitnessSet label(int edge) {
+        return witnessOrdinals.get(edgeTable.get(edge, EDGE_RECORD, LABEL));
+    }
+
+    /**
+     * A vertex handle, whose tokens and edges are stored in the mapped tables of the graph.
+     */
+    static class MappedVertex extends Vertex {
+
+        MappedVertex(VariantGraph graph) {
+            super(graph, null, null, null);
+        }
+
+        private MappedVariantGraph mappedGraph() {
+            return (MappedVariantGraph) graph();
+        }
+
+        @Override
+        public Map<Vertex, Set<Witness>> incoming() {
+            return new Adjacency(mappedGraph(), id(), false);
+        }
+
+        @Override
+        public Map<Vertex, Set<Witness>> outgoing() {
+            return new Adjacency(mappedGraph(), id(), true);
+        }
+
+        @Override
+        public Set<Token> tokens() {
+            return new Tokens(mappedGraph(), id());
+        }
+
+        @Override
+        public Set<Witness> witnesses() {
+            final MappedVariantGraph graph = mappedGraph();
+            final List<WitnessSet> labels = new ArrayList<>();
+            for (int edge = graph.vertex(id(), FIRST_IN); edge != NONE; edge = graph.edgeTable.get(edge, EDGE_RECORD, NEXT_IN)) {
+                labels.add(graph.label(edge));
+            }
+            return graph.witnessOrdinals.union(labels);
+        }
+
+        @Override
+        public void add(Iterable<Token> tokens) {
+            final MappedVariantGraph graph = mappedGraph();
+            if (tokens instanceof Tokens && ((Tokens) tokens).graph == graph) {
+                // tokens of another vertex, e.g. when joining: reference them instead of appending them to their witness again
+                final int vertex = ((Tokens) tokens).vertex;
+                if (vertex == id()) {
+                    return;
+                }
+                for (int t = graph.vertex(vertex, FIRST_TOKEN); t != NONE; t = graph.tokenTable.get(t, TOKEN_RECORD, NEXT_TOKEN)) {
+                    graph.addTokenRecord(id(), graph.tokenTable.get(t, TOKEN_RECORD, WITNESS), graph.tokenTable.get(t, TOKEN_RECORD, POSITION));
+                }
+                return;
+            }
+            final Set<Token> existing = tokens();
+            for (Token token : tokens) {
+                if (!existing.contains(token)) {
+                    graph.addToken(id(), token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read-only view of the incoming or outgoing edges of a vertex.
+     */
+    static class Adjacency extends AbstractMap<Vertex, Set<Witness>> {
+        private final MappedVariantGraph graph;
+        private final int vertex;
+        private final int first;
+        private final int next;
+        private final int other;
+        private final int degree;
+
+        Adjacency(MappedVariantGraph graph, int vertex, boolean outgoing) {
+            this.graph = graph;
+            this.vertex = vertex;
+            this.first = (outgoing ? FIRST_OUT : FIRST_IN);
+            this.next = (outgoing ? NEXT_OUT : NEXT_IN);
+            this.other = (outgoing ? TO : FROM);
+            this.degree = (outgoing ? OUT_DEGREE : IN_DEGREE);
+        }
+
+        private int find(Object key) {
+            if (!(key instanceof MappedVertex) || ((MappedVertex) key).graph() != graph) {
+                return NONE;
+            }
+            final int id = ((MappedVertex) key).id();
+            for (int edge = graph.vertex(vertex, first); edge != NONE; edge = graph.edgeTable.get(edge, EDGE_RECORD, next)) {
+                if (graph.edgeTable.get(edge, EDGE_RECORD, other) == id) {
+                    return edge;
+                }
+            }
+            return NONE;
+        }
+
+        @Override
+        public int size() {
+            return graph.vertex(vertex, degree);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) != NONE;
+        }
+
+        @Override
+        public Set<Witness> get(Object key) {
+            final int edge = find(key);
+            return (edge == NONE ? null : graph.label(edge));
+        }
+
+        @Override
+        public Set<Entry<Vertex, Set<Witness>>> entrySet() {
+            return new AbstractSet<Entry<Vertex, Set<Witness>>>() {
+                @Override
+                public Iterator<Entry<Vertex, Set<Witness>>> iterator() {
+                    return new Iterator<Entry<Vertex, Set<Witness>>>() {
+                        private int edge = graph.vertex(vertex, first);
+
+                        @Override
+                        public boolean hasNext() {
+                            return edge != NONE;
+                        }
+
+                        @Override
+                        public Entry<Vertex, Set<Witness>> next() {
+                            if (edge == NONE) {
+                                throw new NoSuchElementException();
+                            }
+                            final Entry<Vertex, Set<Witness>> entry = new SimpleImmutableEntry<>(
+                                graph.vertices[graph.edgeTable.get(edge, EDGE_RECORD, other)],
+                                graph.label(edge)
+                            );
+                            edge = graph.edgeTable.get(edge, EDGE_RECORD, next);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Adjacency.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Read-only view of the tokens of a vertex.
+     */
+    static class Tokens extends AbstractSet<Token> {
+        private final MappedVariantGraph graph;
+        private final int vertex;
+
+        Tokens(MappedVariantGraph graph, int vertex) {
+            this.graph = graph;
+            this.vertex = vertex;
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            return new Iterator<Token>() {
+                private int token = graph.vertex(vertex, FIRST_TOKEN);
+
+                @Override
+                public boolean hasNext() {
+                    return token != NONE;
+                }
+
+                @Override
+                public Token next() {
+                    if (token == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    final Token next = graph.token(token);
+                    token = graph.tokenTable.get(token, TOKEN_RECORD, NEXT_TOKEN);
+                    return next;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return graph.vertex(vertex, TOKEN_COUNT);
+        }
+    }
+
+    /**
+     * A table of fixed-size integer records in a file, which is mapped into memory in chunks as the table grows, so
+     * that existing chunks never have to be remapped.
+     */
+    static class MappedInts implements Closeable {
+        private static final int CHUNK_SHIFT = 20;
+        private static final int CHUNK_INTS = 1 << CHUNK_SHIFT;
+        private static final int CHUNK_MASK = CHUNK_INTS - 1;
+        private static final long CHUNK_BYTES = (long) CHUNK_INTS * Integer.BYTES;
+
+        private final FileChannel channel;
+        private MappedByteBuffer[] mapped = new MappedByteBuffer[0];
+        private IntBuffer[] chunks = new IntBuffer[0];
+
+        MappedInts(Path file, boolean create) throws IOException {
+            this.channel = (create
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            final long existing = (channel.size() + CHUNK_BYTES - 1) / CHUNK_BYTES;
+            for (int c = 0; c < existing; c++) {
+                map();
+            }
+        }
+
+        int get(int record, int recordSize, int field) {
+            final long index = (long) record * recordSize + field;
+            return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+        }
+
+        void set(int record, int recordSize, int field, int value) {
+            final long index = (long) record * recordSize + field;
+            final int chunk = (int) (index >>> CHUNK_SHIFT);
+            while (chunk >= chunks.length) {
+                map();
+            }
+            chunks[chunk].put((int) (index & CHUNK_MASK), value);
+        }
+
+        private void map() {
+            try {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, chunks.length * CHUNK_BYTES, CHUNK_BYTES);
+                buffer.order(ByteOrder.BIG_ENDIAN);
+                mapped = Arrays.copyOf(mapped, mapped.length + 1);
+                mapped[mapped.length - 1] = buffer;
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = buffer.asIntBuffer();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void force() {
+            for (MappedByteBuffer buffer : mapped) {
+                buffer.force();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mapped = new MappedByteBuffer[0];
+            chunks = new IntBuffer[0];
+            channel.close();
+        }
+    }
+}
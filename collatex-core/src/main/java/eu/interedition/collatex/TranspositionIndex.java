@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Registry of the transpositions in a variant graph.
+ * <p>
+ * Each transposition gets an integer identifier; for every vertex the index keeps the sorted identifiers of the
+ * transpositions it takes part in, in an array indexed by {@link VariantGraph.Vertex#id() vertex identifier}. Looking
+ * up the transpositions of a vertex, testing membership and comparing the transpositions of two vertices are array
+ * operations, which do not hash any sets. Transpositions are registered at most once: registering the same set of
+ * vertices again yields the existing transposition.
+ */
+public class TranspositionIndex {
+
+    private static final int[] NO_IDS = new int[0];
+    private static final Comparator<VariantGraph.Vertex> BY_ID = Comparator.comparingInt(VariantGraph.Vertex::id);
+
+    private final List<Transposition> transpositions = new ArrayList<>();
+    private int[][] byVertex = new int[16][];
+    private int size;
+
+    private final Set<Set<VariantGraph.Vertex>> all = new AbstractSet<Set<VariantGraph.Vertex>>() {
+        @Override
+        public Iterator<Set<VariantGraph.Vertex>> iterator() {
+            return new Iterator<Set<VariantGraph.Vertex>>() {
+                private int id = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return id < transpositions.size();
+                }
+
+                @Override
+                public Set<VariantGraph.Vertex> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final Transposition next = transpositions.get(id);
+                    id = advance(id + 1);
+                    return next;
+                }
+
+                private int advance(int from) {
+                    while (from < transpositions.size() && transpositions.get(from) == null) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o instanceof Transposition && ((Transposition) o).index == TranspositionIndex.this) {
+                return get(((Transposition) o).id) == o;
+            }
+            return super.contains(o);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    /**
+     * @return the number of transpositions in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the transposition with the given identifier, or {@code null} if it has been removed
+     */
+    public Transposition get(int id) {
+        return transpositions.get(id);
+    }
+
+    /**
+     * @return a read-only view of all transpositions
+     */
+    public Set<Set<VariantGraph.Vertex>> all() {
+        return all;
+    }
+
+    /**
+     * @return the sorted identifiers of the transpositions the given vertex takes part in; not to be modified
+     */
+    public int[] ids(VariantGraph.Vertex vertex) {
+        final int id = vertex.id();
+        return (id < byVertex.length && byVertex[id] != null ? byVertex[id] : NO_IDS);
+    }
+
+    public boolean isTransposed(VariantGraph.Vertex vertex) {
+        return ids(vertex).length > 0;
+    }
+
+    public boolean contains(int transposition, VariantGraph.Vertex vertex) {
+        return Arrays.binarySearch(ids(vertex), transposition) >= 0;
+    }
+
+    /**
+     * @return whether both vertices take part in the same transpositions, including none at all
+     */
+    public boolean sameTranspositions(VariantGraph.Vertex a, VariantGraph.Vertex b) {
+        return Arrays.equals(ids(a), ids(b));
+    }
+
+    /**
+     * @return a read-only view of the transpositions the given vertex takes part in
+     */
+    public Set<Set<VariantGraph.Vertex>> of(VariantGraph.Vertex vertex) {
+        return new AbstractSet<Set<VariantGraph.Vertex>>() {
+            @Override
+            public Iterator<Set<VariantGraph.Vertex>> iterator() {
+                final int[] ids = ids(vertex);
+                return new Iterator<Set<VariantGraph.Vertex>>() {
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < ids.length;
+                    }
+
+                    @Override
+                    public Set<VariantGraph.Vertex> next() {
+                        if (i == ids.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return transpositions.get(ids[i++]);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (o instanceof Transposition && ((Transposition) o).index == TranspositionIndex.this) {
+                    return TranspositionIndex.this.contains(((Transposition) o).id, vertex);
+                }
+                return super.contains(o);
+            }
+
+            @Override
+            public int size() {
+                return ids(vertex).length;
+            }
+        };
+    }
+
+    /**
+     * Registers a transposition of the given vertices.
+     *
+     * @return the newly registered transposition, or the existing one with the same vertices
+     */
+    public Transposition register(Set<VariantGraph.Vertex> vertices) {
+        if (vertices.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        final VariantGraph.Vertex[] members = vertices.toArray(new VariantGraph.Vertex[vertices.size()]);
+        Arrays.sort(members, BY_ID);
+
+        final Transposition existing = find(members);
+        if (existing != null) {
+            return existing;
+        }
+        final Transposition transposition = new Transposition(this, transpositions.size(), members);
+        transpositions.add(transposition);
+        size++;
+        for (VariantGraph.Vertex member : members) {
+            addId(member, transposition.id);
+        }
+        return transposition;
+    }
+
+    /**
+     * Removes a transposition from the index.
+     */
+    public void remove(Transposition transposition) {
+        if (transposition.index != this || get(transposition.id) != transposition) {
+            return;
+        }
+        for (VariantGraph.Vertex member : transposition.members) {
+            removeId(member, transposition.id);
+        }
+        transpositions.set(transposition.id, null);
+        size--;
+    }
+
+    /**
+     * Replaces a vertex in all transpositions it takes part in, e.g. when it is joined with the replacement.
+     * A rewritten transposition, which equals an existing one, is merged into the latter.
+     */
+    void replace(VariantGraph.Vertex vertex, VariantGraph.Vertex replacement) {
+        for (int id : ids(vertex)) {
+            final Transposition transposition = transpositions.get(id);
+            final List<VariantGraph.Vertex> members = new ArrayList<>(transposition.members.length);
+            for (VariantGraph.Vertex member : transposition.members) {
+                if (!member.equals(vertex) && !member.equals(replacement)) {
+                    members.add(member);
+                }
+            }
+            members.add(replacement);
+            members.sort(BY_ID);
+            final VariantGraph.Vertex[] rewritten = members.toArray(new VariantGraph.Vertex[members.size()]);
+
+            remove(transposition);
+            if (find(rewritten) == null) {
+                final Transposition replaced = new Transposition(this, id, rewritten);
+                transpositions.set(id, replaced);
+                size++;
+                for (VariantGraph.Vertex member : rewritten) {
+                    addId(member, id);
+                }
+            }
+        }
+    }
+
+    private Transposition find(VariantGraph.Vertex[] members) {
+        for (int id : ids(members[0])) {
+            final Transposition candidate = transpositions.get(id);
+            if (Arrays.equals(candidate.members, members)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void addId(VariantGraph.Vertex vertex, int transposition) {
+        final int v = vertex.id();
+        if (v >= byVertex.length) {
+            byVertex = Arrays.copyOf(byVertex, Math.max(v + 1, byVertex.length * 2));
+        }
+        final int[] ids = (byVertex[v] == null ? NO_IDS : byVertex[v]);
+        final int position = Arrays.binarySearch(ids, transposition);
+        if (position >= 0) {
+            return;
+        }
+        final int insert = -(position + 1);
+        final int[] added = new int[ids.length + 1];
+        System.arraycopy(ids, 0, added, 0, insert);
+        added[insert] = transposition;
+        System.arraycopy(ids, insert, added, insert + 1, ids.length - insert);
+        byVertex[v] = added;
+    }
+
+    private void removeId(VariantGraph.Vertex vertex, int transposition) {
+        final int[] ids = ids(vertex);
+        final int position = Arrays.binarySearch(ids, transposition);
+        if (position < 0) {
+            return;
+        }
+        final int[] removed = new int[ids.length - 1];
+        System.arraycopy(ids, 0, removed, 0, position);
+        System.arraycopy(ids, position + 1, removed, position, removed.length - position);
+        byVertex[vertex.id()] = (removed.length == 0 ? null : removed);
+    }
+
+    /**
+     * An immutable set of transposed vertices, identified within its index.
+     */
+    public static final class Transposition extends AbstractSet<VariantGraph.Vertex> {
+        private final TranspositionIndex index;
+        private final int id;
+        private final VariantGraph.Vertex[] members;
+        private final int hashCode;
+
+        private Transposition(TranspositionIndex index, int id, VariantGraph.Vertex[] members) {
+            this.index = index;
+            this.id = id;
+            this.members = members;
+            this.hashCode = Arrays.stream(members).mapToInt(Object::hashCode).sum();
+        }
+
+        public int id() {
+            return id;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof VariantGraph.Vertex)) {
+                return false;
+            }
+            final int position = Arrays.binarySearch(members, (VariantGraph.Vertex) o, BY_ID);
+            return position >= 0 && members[position] == o;
+        }
+
+        @Override
+        public Iterator<VariantGraph.Vertex> iterator() {
+            return Arrays.asList(members).iterator();
+        }
+
+        @Override
+        public int size() {
+            return members.length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Transposition && ((Transposition) o).index == index) {
+                return o == this || Arrays.equals(members, ((Transposition) o).members);
+            }
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -21,17 +21,19 @@ package eu.interedition.collatex;
 
 import eu.interedition.collatex.util.VariantGraphTraversal;
 
+import java.util.AbstractSet;
 import java.util.ArrayDeque;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
@@ -39,15 +41,35 @@ import java.util.stream.Collectors;
 public class VariantGraph {
     final VariantGraph.Vertex start;
     final VariantGraph.Vertex end;
-    final Map<Vertex, Set<Set<Vertex>>> transpositionIndex = new HashMap<>();
+    final TranspositionIndex transpositionIndex = new TranspositionIndex();
+    final WitnessSet.Ordinals witnessOrdinals = new WitnessSet.Ordinals();
+    private int vertexIds;
+    int modifications;
+
+    // shape counters, maintained by all implementations; see statistics()
+    int absorbedVertices;
+    int edgeCount;
+    int tokenReferences;
+    long edgeWitnesses;
 
     public VariantGraph() {
-        super();
-        this.start = new VariantGraph.Vertex(this);
-        this.end = new VariantGraph.Vertex(this);
+        this(VariantGraph.Vertex::new);
+
+        this.start.outgoing.put(this.end, witnessOrdinals.empty());
+        this.end.incoming.put(this.start, witnessOrdinals.empty());
+        labelled(null, witnessOrdinals.empty());
+    }
 
-        this.start.outgoing.put(this.end, Collections.emptySet());
-        this.end.incoming.put(this.start, Collections.emptySet());
+    /**
+     * Constructor for alternative graph implementations, which provide their own vertex type
+     * and are responsible for connecting the start and the end vertex.
+     *
+     * @param vertexFactory creates the start and the end vertex of the new graph
+     */
+    protected VariantGraph(Function<VariantGraph, ? extends Vertex> vertexFactory) {
+        super();
+        this.start = vertexFactory.apply(this);
+        this.end = vertexFactory.apply(this);
     }
 
     public Vertex getStart() {
@@ -59,7 +81,11 @@ public class VariantGraph {
     }
 
     public Set<Set<Vertex>> transpositions() {
-        return transpositionIndex.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+        return transpositionIndex.all();
+    }
+
+    public TranspositionIndex transpositionIndex() {
+        return transpositionIndex;
     }
 
     public Iterable<Vertex> vertices() {
@@ -69,6 +95,7 @@ public class VariantGraph {
     public Vertex add(Token token) {
         final VariantGraph.Vertex vertex = new VariantGraph.Vertex(this);
         vertex.tokens.add(token);
+        tokenReferences++;
         return vertex;
     }
 
@@ -77,34 +104,49 @@ public class VariantGraph {
             throw new IllegalArgumentException();
         }
 
-        witnesses = new HashSet<>(witnesses);
-        Optional.ofNullable(from.outgoing.remove(to)).ifPresent(witnesses::addAll);
+        WitnessSet label = witnessOrdinals.of(witnesses);
+        final Set<Witness> existing = from.outgoing.get(to);
+        if (existing != null) {
+            label = witnessOrdinals.union(witnessOrdinals.of(existing), label);
+        }
 
-        from.outgoing.put(to, witnesses);
-        to.incoming.put(from, witnesses);
+        from.outgoing.put(to, label);
+        to.incoming.put(from, label);
+        labelled(existing, label);
 
-        start.outgoing.remove(end);
+        final Set<Witness> placeholder = start.outgoing.remove(end);
         end.incoming.remove(start);
+        if (placeholder != null) {
+            unlinked(placeholder);
+        }
+
+        modifications++;
     }
 
     public Set<Vertex> transpose(Set<Vertex> vertices) {
-        if (vertices.isEmpty()) {
-            throw new IllegalArgumentException();
-        }
-        for (Set<Vertex> transposition : vertices.iterator().next().transpositions()) {
-            if (transposition.equals(vertices)) {
-                return transposition;
-            }
-        }
-        final Set<Vertex> t = new HashSet<>(vertices);
-        for (VariantGraph.Vertex vertex : t) {
-            transpositionIndex.computeIfAbsent(vertex, v -> new HashSet<>()).add(t);
-        }
-        return t;
+        return transpositionIndex.register(vertices);
     }
 
     public Set<Witness> witnesses() {
-        return start.outgoing().values().stream().flatMap(Collection::stream).collect(Collectors.toSet());
+        return witnessOrdinals.union(start.outgoing().values());
+    }
+
+    /**
+     * Takes a read-only snapshot of this graph, which can be read by multiple threads concurrently, e.g. in order to
+     * serialize a collation into several formats.
+     *
+     * @return a snapshot of this graph in its current state
+     * @see FrozenVariantGraph
+     */
+    public FrozenVariantGraph freeze() {
+        return new FrozenVariantGraph(this);
+    }
+
+    /**
+     * @return the ordinals of the witnesses in this graph, by which all of its edge labels are interned
+     */
+    public WitnessSet.Ordinals witnessOrdinals() {
+        return witnessOrdinals;
     }
 
     @Override
@@ -113,17 +155,133 @@ public class VariantGraph {
     }
 
 
+    /**
+     * Number of vertex identifiers handed out by this graph so far.
+     *
+     * @return an upper bound (exclusive) of all {@link Vertex#id() vertex identifiers}
+     */
+    public int vertexIds() {
+        return vertexIds;
+    }
+
+    /**
+     * Counts structural changes of this graph, i.e. connected edges and joined vertices, so that derived data like
+     * a {@link eu.interedition.collatex.util.VariantGraphRanking ranking} can tell whether it is still current.
+     *
+     * @return the number of structural changes applied to this graph so far
+     */
+    public int modifications() {
+        return modifications;
+    }
+
+    /**
+     * Reports the size and shape of this graph from counters, which are updated as vertices are added, connected,
+     * transposed and joined. Cheap enough to be called at any time, e.g. while collating; the maximum rank is left
+     * unknown, see {@link VariantGraphStatistics#of(VariantGraph)} for computing it.
+     *
+     * @return the current statistics of this graph
+     */
+    public VariantGraphStatistics statistics() {
+        return new VariantGraphStatistics(this, vertexIds - absorbedVertices, edgeCount, tokenReferences, edgeWitnesses, -1);
+    }
+
+    /**
+     * Estimates the heap retained by a graph of this implementation with the given shape, assuming a 64-bit JVM with
+     * compressed references. Tokens are not included, as they are retained by their witnesses anyway.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateHeapSize(long vertices, long edges, long tokens) {
+        return heapSize(vertices, edges, tokens);
+    }
+
+    /**
+     * Estimates the heap retained by a graph of this class with the given shape, without creating one.
+     *
+     * @return the estimated size in bytes
+     * @see #estimateHeapSize(long, long, long)
+     */
+    public static long heapSize(long vertices, long edges, long tokens) {
+        // vertex object with a token array and two adjacency maps; two map entries per edge, one array slot per token
+        return vertices * 328 + edges * 64 + tokens * 8;
+    }
+
+    /**
+     * Accounts for an edge, which has been added or relabelled.
+     *
+     * @param previous the previous label of the edge; {@code null} if it has been added
+     */
+    void labelled(Set<Witness> previous, Set<Witness> label) {
+        if (previous == null) {
+            edgeCount++;
+        } else {
+            edgeWitnesses -= previous.size();
+        }
+        edgeWitnesses += label.size();
+    }
+
+    void unlinked(Set<Witness> label) {
+        edgeCount--;
+        edgeWitnesses -= label.size();
+    }
+
+    /**
+     * Accounts for a vertex, which has been joined into its predecessor along with its tokens.
+     */
+    void absorbed(Vertex successor) {
+        absorbedVertices++;
+        tokenReferences -= successor.tokens().size();
+    }
+
+    /**
+     * Moves the outgoing edges of a vertex to its only predecessor, dropping the edge between both.
+     * Used when joining vertices.
+     *
+     * @param vertex the predecessor, which keeps its incoming edges
+     * @param successor the vertex to be joined into its predecessor
+     */
+    protected void absorb(Vertex vertex, Vertex successor) {
+        unlinked(vertex.outgoing.get(successor));
+        absorbed(successor);
+        vertex.outgoing.clear();
+        vertex.outgoing.putAll(successor.outgoing);
+
+        vertex.outgoing.keySet().forEach(v -> v.incoming.put(vertex, v.incoming.remove(successor)));
+
+        modifications++;
+    }
+
     /**
      * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
      */
     public static class Vertex {
         private final VariantGraph graph;
-        private final Set<Token> tokens = new HashSet<>();
-        private final Map<Vertex, Set<Witness>> outgoing = new HashMap<>();
-        private final Map<Vertex, Set<Witness>> incoming = new HashMap<>();
+        private final int id;
+        private final Set<Token> tokens;
+        private final Map<Vertex, Set<Witness>> outgoing;
+        private final Map<Vertex, Set<Witness>> incoming;
 
         public Vertex(VariantGraph graph) {
+            this(graph, new TokenArray(), new HashMap<>(), new HashMap<>());
+        }
+
+        /**
+         * Constructor for alternative graph implementations, which keep tokens and edges outside
+         * of vertex objects and override the respective accessors.
+         */
+        protected Vertex(VariantGraph graph, Set<Token> tokens, Map<Vertex, Set<Witness>> outgoing, Map<Vertex, Set<Witness>> incoming) {
             this.graph = graph;
+            this.id = graph.vertexIds++;
+            this.tokens = tokens;
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+        }
+
+        /**
+         * @return an identifier of this vertex, dense and unique within its graph
+         */
+        public int id() {
+            return id;
         }
 
         public Map<Vertex, Set<Witness>> incoming() {
@@ -135,7 +293,7 @@ public class VariantGraph {
         }
 
         public Set<Set<Vertex>> transpositions() {
-            return graph.transpositionIndex.getOrDefault(this, Collections.emptySet());
+            return graph.transpositionIndex.of(this);
         }
 
         public Set<Token> tokens() {
@@ -143,11 +301,15 @@ public class VariantGraph {
         }
 
         public Set<Witness> witnesses() {
-            return incoming().values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+            return graph.witnessOrdinals.union(incoming().values());
         }
 
         public void add(Iterable<Token> tokens) {
-            tokens.forEach(this.tokens::add);
+            for (Token token : tokens) {
+                if (this.tokens.add(token)) {
+                    graph.tokenReferences++;
+                }
+            }
         }
 
         public VariantGraph graph() {
@@ -155,23 +317,122 @@ public class VariantGraph {
         }
 
         public String toString() {
-            return tokens.toString();
+            return tokens().toString();
+        }
+    }
+
+    /**
+     * Token set of a vertex, backed by an array, which grows as tokens are appended.
+     * <p>
+     * Most vertices hold a single token per witness, so that a hash set is not worth its footprint; duplicates are
+     * found by a linear search, which is cheap for that few tokens.
+     */
+    static final class TokenArray extends AbstractSet<Token> {
+        private static final Token[] NO_TOKENS = new Token[0];
+
+        private Token[] tokens = NO_TOKENS;
+        private int size;
+
+        @Override
+        public boolean add(Token token) {
+            if (contains(token)) {
+                return false;
+            }
+            if (size == tokens.length) {
+                tokens = Arrays.copyOf(tokens, size == 0 ? 1 : size * 2);
+            }
+            tokens[size++] = token;
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (int t = 0; t < size; t++) {
+                if (tokens[t].equals(o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<Token> iterator() {
+            return new Iterator<Token>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Token next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return tokens[next++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
     }
 
+    /**
+     * Joins chains of vertices, which are connected by a single edge and take part in the same transpositions, into
+     * single vertices.
+     * <p>
+     * The graph is traversed once in topological order; each vertex absorbs its successors as long as they can be
+     * joined, which are then skipped. Transpositions of absorbed vertices are rewritten in place via the
+     * {@link TranspositionIndex transposition index}, so that the cost is linear in the size of the graph and its transpositions.
+     */
     public static final Function<VariantGraph, VariantGraph> JOIN = graph -> {
+        final List<Vertex> vertices = new ArrayList<>();
+        graph.vertices().forEach(vertices::add);
+
+        final boolean[] absorbed = new boolean[graph.vertexIds()];
+        for (Vertex vertex : vertices) {
+            if (absorbed[vertex.id()] || graph.start.equals(vertex)) {
+                continue;
+            }
+            while (vertex.outgoing().size() == 1) {
+                final Vertex joinCandidateVertex = vertex.outgoing().keySet().iterator().next();
+                final boolean canJoin = !graph.end.equals(joinCandidateVertex) && //
+                    joinCandidateVertex.incoming().size() == 1 && //
+                    graph.transpositionIndex.sameTranspositions(vertex, joinCandidateVertex);
+                if (!canJoin) {
+                    break;
+                }
+                vertex.add(joinCandidateVertex.tokens());
+                graph.transpositionIndex.replace(joinCandidateVertex, vertex);
+                graph.absorb(vertex, joinCandidateVertex);
+                absorbed[joinCandidateVertex.id()] = true;
+            }
+        }
+
+        return graph;
+    };
+
+    /**
+     * The previous implementation of {@link #JOIN}, which revisits vertices after each join and copies the affected
+     * transpositions. Superseded by the former and kept for comparison in benchmarks.
+     */
+    public static final Function<VariantGraph, VariantGraph> LEGACY_JOIN = graph -> {
         final Set<Vertex> processed = new HashSet<>();
-        final Deque<Vertex> queue = new ArrayDeque<>(graph.start.outgoing.keySet());
+        final Deque<Vertex> queue = new ArrayDeque<>(graph.start.outgoing().keySet());
 
         while (!queue.isEmpty()) {
             final Vertex vertex = queue.pop();
             final Set<Set<Vertex>> transpositions = new HashSet<>(vertex.transpositions());
-            if (vertex.outgoing.size() == 1) {
-                final Vertex joinCandidateVertex = vertex.outgoing.keySet().iterator().next();
+            if (vertex.outgoing().size() == 1) {
+                final Vertex joinCandidateVertex = vertex.outgoing().keySet().iterator().next();
                 final Set<Set<Vertex>> joinCandidateTranspositions = new HashSet<>(joinCandidateVertex.transpositions());
 
                 boolean canJoin = !graph.end.equals(joinCandidateVertex) && //
-                    joinCandidateVertex.incoming.size() == 1 && //
+                    joinCandidateVertex.incoming().size() == 1 && //
                     transpositions.equals(joinCandidateTranspositions);
                 if (canJoin) {
                     vertex.add(joinCandidateVertex.tokens());
@@ -179,16 +440,11 @@ public class VariantGraph {
                         final Set<Vertex> transposed = new HashSet<>(t);
                         transposed.remove(joinCandidateVertex);
                         transposed.add(vertex);
-                        for (Vertex tv : t) {
-                            graph.transpositionIndex.getOrDefault(tv, Collections.emptySet()).remove(t);
-                        }
+                        graph.transpositionIndex.remove((TranspositionIndex.Transposition) t);
                         graph.transpose(transposed);
                     }
 
-                    vertex.outgoing.clear();
-                    vertex.outgoing.putAll(joinCandidateVertex.outgoing);
-
-                    vertex.outgoing.keySet().forEach(v -> v.incoming.put(vertex, v.incoming.remove(joinCandidateVertex)));
+                    graph.absorb(vertex, joinCandidateVertex);
 
                     queue.push(vertex);
                     continue;
@@ -197,7 +453,7 @@ public class VariantGraph {
 
             // FIXME: Why do we run out of memory in some cases here, if this is not checked?
             processed.add(vertex);
-            vertex.outgoing.keySet().stream().filter(v -> !processed.contains(v)).forEach(queue::push);
+            vertex.outgoing().keySet().stream().filter(v -> !processed.contains(v)).forEach(queue::push);
         }
 
         return graph;
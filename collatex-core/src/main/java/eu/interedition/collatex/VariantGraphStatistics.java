@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.util.VariantGraphRanking;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Size and shape of a variant graph, e.g. for capacity planning.
+ * <p>
+ * {@link VariantGraph#statistics()} returns the counters a graph maintains while it is built, which is cheap at any
+ * time but leaves the {@link #getMaxRank() maximum rank} unknown. {@link #of(VariantGraph)} traverses and ranks a graph
+ * in order to compute all figures.
+ */
+public class VariantGraphStatistics {
+
+    private static final int WITNESS_SET_BYTES = 56;
+
+    private final int vertices;
+    private final int edges;
+    private final int tokens;
+    private final int transpositions;
+    private final int witnesses;
+    private final int witnessSets;
+    private final int maxRank;
+    private final double meanWitnessesPerEdge;
+    private final long estimatedHeapSize;
+
+    VariantGraphStatistics(VariantGraph graph, int vertices, int edges, int tokens, long edgeWitnesses, int maxRank) {
+        final WitnessSet.Ordinals ordinals = graph.witnessOrdinals();
+        this.vertices = vertices;
+        this.edges = edges;
+        this.tokens = tokens;
+        this.transpositions = graph.transpositionIndex().size();
+        this.witnesses = ordinals.size();
+        this.witnessSets = ordinals.sets();
+        this.maxRank = maxRank;
+        this.meanWitnessesPerEdge = (edges == 0 ? 0 : (double) edgeWitnesses / edges);
+        this.estimatedHeapSize = graph.estimateHeapSize(vertices, edges, tokens)
+            + (long) witnessSets * (WITNESS_SET_BYTES + Long.BYTES * ((witnesses + Long.SIZE - 1) / Long.SIZE));
+    }
+
+    /**
+     * Computes the statistics of the given graph by traversing and ranking it.
+     */
+    public static VariantGraphStatistics of(VariantGraph graph) {
+        int vertices = 0;
+        int edges = 0;
+        int tokens = 0;
+        long edgeWitnesses = 0;
+        for (VariantGraph.Vertex vertex : graph.vertices()) {
+            vertices++;
+            tokens += vertex.tokens().size();
+            for (Map.Entry<VariantGraph.Vertex, Set<Witness>> edge : vertex.outgoing().entrySet()) {
+                edges++;
+                edgeWitnesses += edge.getValue().size();
+            }
+        }
+        final int maxRank = VariantGraphRanking.of(graph).apply(graph.getEnd());
+        return new VariantGraphStatistics(graph, vertices, edges, tokens, edgeWitnesses, maxRank);
+    }
+
+    /**
+     * @return the number of vertices, including the start and the end vertex
+     */
+    public int getVertices() {
+        return vertices;
+    }
+
+    public int getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return the number of token references held by the vertices
+     */
+    public int getTokens() {
+        return tokens;
+    }
+
+    public int getTranspositions() {
+        return transpositions;
+    }
+
+    public int getWitnesses() {
+        return witnesses;
+    }
+
+    /**
+     * @return the number of distinct witness sets, which edges are labelled with
+     */
+    public int getWitnessSets() {
+        return witnessSets;
+    }
+
+    /**
+     * @return the rank of the end vertex; {@code -1} if the graph has not been ranked
+     */
+    public int getMaxRank() {
+        return maxRank;
+    }
+
+    public double getMeanWitnessesPerEdge() {
+        return meanWitnessesPerEdge;
+    }
+
+    /**
+     * @return an estimate of the heap retained by the graph in bytes, excluding the tokens themselves, which are
+     *         retained by their witnesses
+     * @see VariantGraph#estimateHeapSize(long, long, long)
+     */
+    public long getEstimatedHeapSize() {
+        return estimatedHeapSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("vertices=%d, edges=%d, tokens=%d, transpositions=%d, witnesses=%d, witnessSets=%d, maxRank=%d, witnessesPerEdge=%.2f, heap=%d KiB",
+            vertices, edges, tokens, transpositions, witnesses, witnessSets, maxRank, meanWitnessesPerEdge, estimatedHeapSize / 1024);
+    }
+}
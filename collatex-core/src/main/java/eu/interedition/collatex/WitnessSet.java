@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of witnesses, encoded as a bit set over the witness ordinals of a variant graph.
+ * <p>
+ * Witness sets are interned by their {@link Ordinals ordinals}, so that two sets of the same graph are equal if and
+ * only if they are identical. Edge labels of a graph share their witness sets; union, intersection tests and equality
+ * are computed on the underlying words.
+ */
+public final class WitnessSet extends AbstractSet<Witness> {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private final Ordinals ordinals;
+    private final long[] words;
+    private final int id;
+    private final int size;
+    private final int hashCode;
+
+    private WitnessSet(Ordinals ordinals, long[] words, int id) {
+        this.ordinals = ordinals;
+        this.words = words;
+        this.id = id;
+
+        int size = 0;
+        int hashCode = 0;
+        for (int ordinal = nextOrdinal(0); ordinal >= 0; ordinal = nextOrdinal(ordinal + 1)) {
+            size++;
+            hashCode += ordinals.witness(ordinal).hashCode();
+        }
+        this.size = size;
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * @return the identifier of this set, dense and unique among the sets interned by its ordinals; {@code -1} for sets,
+     * which have been computed without interning them
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return the ordinals this set has been interned by
+     */
+    public Ordinals ordinals() {
+        return ordinals;
+    }
+
+    public boolean contains(int ordinal) {
+        final int word = ordinal / Long.SIZE;
+        return word < words.length && (words[word] & (1L << (ordinal % Long.SIZE))) != 0;
+    }
+
+    public boolean intersects(WitnessSet other) {
+        return intersects(other.words);
+    }
+
+    public boolean intersects(long[] mask) {
+        for (int w = 0, wl = Math.min(words.length, mask.length); w < wl; w++) {
+            if ((words[w] & mask[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param from the ordinal to start searching at
+     * @return the lowest ordinal in this set, which is greater than or equal to the given one; {@code -1} if there is none
+     */
+    public int nextOrdinal(int from) {
+        int word = from / Long.SIZE;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << (from % Long.SIZE));
+        while (true) {
+            if (bits != 0) {
+                return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        final int ordinal = ordinals.find(o);
+        return ordinal >= 0 && contains(ordinal);
+    }
+
+    @Override
+    public Iterator<Witness> iterator() {
+        return new Iterator<Witness>() {
+            private int ordinal = nextOrdinal(0);
+
+            @Override
+            public boolean hasNext() {
+                return ordinal >= 0;
+            }
+
+            @Override
+            public Witness next() {
+                if (ordinal < 0) {
+                    throw new NoSuchElementException();
+                }
+                final Witness next = ordinals.witness(ordinal);
+                ordinal = nextOrdinal(ordinal + 1);
+                return next;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof WitnessSet && ((WitnessSet) o).ordinals == ordinals) {
+            final WitnessSet other = (WitnessSet) o;
+            return (id >= 0 && other.id >= 0 ? other == this : Arrays.equals(words, other.words));
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Assigns stable ordinals to the witnesses of a variant graph and interns the witness sets built from them.
+     * <p>
+     * Ordinals are only modified via {@link #ordinal(Witness)}, {@link #of(Collection)} and
+     * {@link #union(WitnessSet, WitnessSet)}, i.e. when the graph is; like the graph they belong to, they are meant to
+     * be modified by one collation at a time, while reading them concurrently is safe in between.
+     */
+    public static class Ordinals {
+        private final List<Witness> witnesses = new ArrayList<>();
+        private final Map<Witness, Integer> ordinals = new HashMap<>();
+        private final List<WitnessSet> sets = new ArrayList<>();
+
+        private WitnessSet[] internTable = new WitnessSet[16];
+        private final WitnessSet empty;
+
+        public Ordinals() {
+            this.empty = intern(NO_WORDS, 0);
+        }
+
+        /**
+         * @return the number of witnesses, which have been assigned an ordinal
+         */
+        public int size() {
+            return witnesses.size();
+        }
+
+        public Witness witness(int ordinal) {
+            return witnesses.get(ordinal);
+        }
+
+        /**
+         * @return the ordinal of the given witness, assigned on first request
+         */
+        public int ordinal(Witness witness) {
+            Integer ordinal = ordinals.get(witness);
+            if (ordinal == null) {
+                ordinal = witnesses.size();
+                witnesses.add(witness);
+                ordinals.put(witness, ordinal);
+            }
+            return ordinal;
+        }
+
+        /**
+         * @return the ordinal of the given witness, or {@code -1} if none has been assigned
+         */
+        public int find(Object witness) {
+            final Integer ordinal = ordinals.get(witness);
+            return (ordinal == null ? -1 : ordinal);
+        }
+
+        /**
+         * @return the interned set with the given {@link WitnessSet#id() identifier}
+         */
+        public WitnessSet get(int id) {
+            return sets.get(id);
+        }
+
+        /**
+         * @return the number of distinct witness sets interned so far
+         */
+        public int sets() {
+            return sets.size();
+        }
+
+        public WitnessSet empty() {
+            return empty;
+        }
+
+        public WitnessSet of(Collection<? extends Witness> witnesses) {
+            if (witnesses instanceof WitnessSet && ((WitnessSet) witnesses).ordinals == this) {
+                final WitnessSet set = (WitnessSet) witnesses;
+                return (set.id >= 0 ? set : intern(set.words, set.words.length));
+            }
+            final long[] words = new long[(ordinals.size() + witnesses.size() + Long.SIZE - 1) / Long.SIZE];
+            int length = 0;
+            for (Witness witness : witnesses) {
+                final int ordinal = ordinal(witness);
+                final int word = ordinal / Long.SIZE;
+                words[word] |= 1L << (ordinal % Long.SIZE);
+                length = Math.max(length, word + 1);
+            }
+            return intern(words, length);
+        }
+
+        /**
+         * Encodes the given witnesses as a bit mask over their ordinals, e.g. for filtering edges via
+         * {@link WitnessSet#intersects(long[])}.
+         * <p>
+         * Unlike {@link #of(Collection)} this neither assigns ordinals nor interns a set, so that it does not modify
+         * these ordinals: witnesses, which are not known yet, cannot be contained in any of its sets and are left out.
+         */
+        public long[] mask(Collection<?> witnesses) {
+            long[] mask = NO_WORDS;
+            for (Object witness : witnesses) {
+                final int ordinal = find(witness);
+                if (ordinal >= 0) {
+                    final int word = ordinal / Long.SIZE;
+                    if (word >= mask.length) {
+                        mask = Arrays.copyOf(mask, word + 1);
+                    }
+                    mask[word] |= 1L << (ordinal % Long.SIZE);
+                }
+            }
+            return mask;
+        }
+
+        public WitnessSet union(WitnessSet a, WitnessSet b) {
+            a = of(a);
+            b = of(b);
+            if (a == b || b.isEmpty()) {
+                return a;
+            }
+            if (a.isEmpty()) {
+                return b;
+            }
+            final int length = Math.max(a.words.length, b.words.length);
+            final long[] words = new long[length];
+            for (int w = 0; w < length; w++) {
+                words[w] = (w < a.words.length ? a.words[w] : 0L) | (w < b.words.length ? b.words[w] : 0L);
+            }
+            return intern(words, length);
+        }
+
+        /**
+         * Unlike {@link #union(WitnessSet, WitnessSet)}, this neither assigns ordinals nor interns the union, so that
+         * reading a graph, e.g. the witnesses of its vertices, does not modify its ordinals: the interned set is returned
+         * if there is one, otherwise a set, which is not interned.
+         *
+         * @param sets sets of witnesses, which have been assigned ordinals, e.g. edge labels
+         * @return the union of the given sets
+         */
+        public WitnessSet union(Collection<? extends Collection<? extends Witness>> sets) {
+            long[] words = NO_WORDS;
+            for (Collection<? extends Witness> set : sets) {
+                if (set instanceof WitnessSet && ((WitnessSet) set).ordinals == this) {
+                    final long[] setWords = ((WitnessSet) set).words;
+                    if (setWords.length > words.length) {
+                        words = Arrays.copyOf(words, setWords.length);
+                    }
+                    for (int w = 0; w < setWords.length; w++) {
+                        words[w] |= setWords[w];
+                    }
+                    continue;
+                }
+                for (Witness witness : set) {
+                    final int ordinal = find(witness);
+                    if (ordinal < 0) {
+                        throw new IllegalArgumentException(String.valueOf(witness));
+                    }
+                    final int word = ordinal / Long.SIZE;
+                    if (word >= words.length) {
+                        words = Arrays.copyOf(words, word + 1);
+                    }
+                    words[word] |= 1L << (ordinal % Long.SIZE);
+                }
+            }
+            int length = words.length;
+            while (length > 0 && words[length - 1] == 0L) {
+                length--;
+            }
+            final int slot = slot(words, length);
+            return (internTable[slot] != null ? internTable[slot] : new WitnessSet(this, Arrays.copyOf(words, length), -1));
+        }
+
+        /**
+         * @return the slot of the interned set with the given words, or the empty slot it would be interned at
+         */
+        private int slot(long[] words, int length) {
+            final int mask = internTable.length - 1;
+            int slot = hash(words, length) & mask;
+            while (internTable[slot] != null && !sameWords(internTable[slot].words, words, length)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private WitnessSet intern(long[] words, int length) {
+            while (length > 0 && words[length - 1] == 0L) {
+                length--;
+            }
+            final int slot = slot(words, length);
+            if (internTable[slot] != null) {
+                return internTable[slot];
+            }
+            final WitnessSet set = new WitnessSet(this, (length == 0 ? NO_WORDS : Arrays.copyOf(words, length)), sets.size());
+            sets.add(set);
+            internTable[slot] = set;
+            if (sets.size() * 2 > internTable.length) {
+                rehash();
+            }
+            return set;
+        }
+
+        private void rehash() {
+            internTable = new WitnessSet[internTable.length * 2];
+            final int mask = internTable.length - 1;
+            for (WitnessSet set : sets) {
+                int slot = hash(set.words, set.words.length) & mask;
+                while (internTable[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                internTable[slot] = set;
+            }
+        }
+
+        private static int hash(long[] words, int length) {
+            int hash = 1;
+            for (int w = 0; w < length; w++) {
+                hash = 31 * hash + Long.hashCode(words[w]);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean sameWords(long[] a, long[] b, int length) {
+            if (a.length != length) {
+                return false;
+            }
+            for (int w = 0; w < length; w++) {
+                if (a[w] != b[w]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
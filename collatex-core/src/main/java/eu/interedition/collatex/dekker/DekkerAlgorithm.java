@@ -27,8 +27,11 @@ import eu.interedition.collatex.dekker.island.Island;
 import eu.interedition.collatex.dekker.island.IslandCollection;
 import eu.interedition.collatex.dekker.island.IslandConflictResolver;
 import eu.interedition.collatex.dekker.token_index.TokenIndex;
+import eu.interedition.collatex.dekker.token_index.TokenIndexCache;
 import eu.interedition.collatex.dekker.token_index.TokenIndexToMatches;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.SuffixArrays;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
@@ -40,6 +43,8 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
     public TokenIndex tokenIndex;
     // tokens are mapped to vertices by their position in the token array
     protected VariantGraph.Vertex[] vertex_array;
+    // the graph, whose witnesses are indexed
+    private VariantGraph indexedGraph;
     private final Comparator<Token> comparator;
     private final PhraseMatchDetector phraseMatchDetector;
     private final TranspositionDetector transpositionDetector;
@@ -49,6 +54,8 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
     private List<List<Match>> phraseMatches;
     private List<List<Match>> transpositions;
     private boolean mergeTranspositions = false;
+    private ISuffixArrayBuilder suffixArrayBuilder = SuffixArrays.defaultAlgorithm();
+    private TokenIndexCache tokenIndexCache;
 
     public DekkerAlgorithm() {
         this(new EqualityTokenComparator());
@@ -60,6 +67,21 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
         this.transpositionDetector = new TranspositionDetector();
     }
 
+    /**
+     * Sets the algorithm, which builds the suffix array of the token index; picked depending on the input by default.
+     */
+    public void setSuffixArrayBuilder(ISuffixArrayBuilder suffixArrayBuilder) {
+        this.suffixArrayBuilder = suffixArrayBuilder;
+    }
+
+    /**
+     * Sets the cache of token indexes, so that repeated collations of the same witnesses skip deriving the suffix
+     * array, LCP array and blocks; none by default.
+     */
+    public void setTokenIndexCache(TokenIndexCache tokenIndexCache) {
+        this.tokenIndexCache = tokenIndexCache;
+    }
+
     // The algorithm contains two phases:
     // 1) Matching phase
     // This phase is implemented using a token array -> suffix array -> LCP array -> LCP intervals
@@ -68,143 +90,153 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
     // This phase uses a priority queue and looks at overlap between possible matches to find the optimal alignment and moves
     @Override
     public void collate(VariantGraph graph, List<? extends Iterable<Token>> witnesses) {
-        // phase 1: matching phase
-        if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("Building token index from the tokens of all witnesses");
-        }
-
-        this.tokenIndex = new TokenIndex(comparator, witnesses);
-        tokenIndex.prepare();
-
-        // phase 2: alignment phase
-        this.vertex_array = new VariantGraph.Vertex[tokenIndex.token_array.length];
-        boolean firstWitness = true;
-
-        for (Iterable<Token> tokens : witnesses) {
-            final Witness witness = StreamUtil.stream(tokens)
-                    .findFirst()
-                    .map(Token::getWitness)
-                    .orElseThrow(() -> new IllegalArgumentException("Empty witness"));
-
-            // first witness has a fast path
-            if (firstWitness) {
-                super.merge(graph, tokens, Collections.emptyMap());
-                updateTokenToVertexArray(tokens, witness);
-                firstWitness = false;
-                continue;
+        try {
+            // phase 1: matching phase
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Building token index from the tokens of all witnesses");
             }
 
-            // align second, third, fourth witness etc.
-            if (LOG.isLoggable(Level.FINER)) {
-                LOG.log(Level.FINER, "{0} + {1}: {2} vs. {3}", new Object[]{graph, witness, graph.vertices(), tokens});
-            }
+            this.tokenIndex = new TokenIndex(comparator, witnesses, suffixArrayBuilder);
+            tokenIndex.setCache(tokenIndexCache);
+            tokenIndex.prepare();
+            this.indexedGraph = graph;
+
+            // phase 2: alignment phase
+            this.vertex_array = new VariantGraph.Vertex[tokenIndex.token_array.length];
+            boolean firstWitness = true;
+
+            for (Iterable<Token> tokens : witnesses) {
+                final Witness witness = StreamUtil.stream(tokens)
+                        .findFirst()
+                        .map(Token::getWitness)
+                        .orElseThrow(() -> new IllegalArgumentException("Empty witness"));
+
+                // first witness has a fast path
+                if (firstWitness) {
+                    super.merge(graph, tokens, Collections.emptyMap());
+                    updateTokenToVertexArray(tokens, witness);
+                    firstWitness = false;
+                    continue;
+                }
 
-            // Phase 2a: Gather matches from the token index
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "{0} + {1}: Gather matches between variant graph and witness from token index", new Object[]{graph, witness});
+                align(graph, tokens, witness);
             }
+        } finally {
+            releaseRanking();
+        }
+    }
 
-            allPossibleIslands = TokenIndexToMatches.createMatches(tokenIndex, vertex_array, graph, tokens);
+    // align second, third, fourth witness etc.
+    private void align(VariantGraph graph, Iterable<Token> tokens, Witness witness) {
+        if (LOG.isLoggable(Level.FINER)) {
+            LOG.log(Level.FINER, "{0} + {1}: {2} vs. {3}", new Object[]{graph, witness, graph.vertices(), tokens});
+        }
 
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "{0} + {1}: Aligning witness and graph", new Object[]{graph, witness});
-            }
+        // Phase 2a: Gather matches from the token index
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} + {1}: Gather matches between variant graph and witness from token index", new Object[]{graph, witness});
+        }
 
-            // Phase 2b: do the actual alignment
-            IslandConflictResolver resolver = new IslandConflictResolver(new IslandCollection(allPossibleIslands));
-            preferredIslands = resolver.createNonConflictingVersion().getIslands();
+        allPossibleIslands = TokenIndexToMatches.createMatches(tokenIndex, vertex_array, ranking(graph), tokens);
 
-            // we need to convert the islands into Map<Token, Vertex> for further processing
-            Map<Token, VariantGraph.Vertex> alignments = new HashMap<>();
-            for (Island island : preferredIslands) {
-                for (Coordinate c : island) {
-                    alignments.put(c.match.token, c.match.vertex);
-                }
-            }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} + {1}: Aligning witness and graph", new Object[]{graph, witness});
+        }
 
-            if (LOG.isLoggable(Level.FINER)) {
-                for (Map.Entry<Token, VariantGraph.Vertex> tokenLink : alignments.entrySet()) {
-                    LOG.log(Level.FINER, "{0} + {1}: Aligned token (incl transposed): {2} = {3}", new Object[]{graph, witness, tokenLink.getValue(), tokenLink.getKey()});
-                }
+        // Phase 2b: do the actual alignment
+        IslandConflictResolver resolver = new IslandConflictResolver(new IslandCollection(allPossibleIslands));
+        preferredIslands = resolver.createNonConflictingVersion().getIslands();
+
+        // we need to convert the islands into Map<Token, Vertex> for further processing
+        Map<Token, VariantGraph.Vertex> alignments = new HashMap<>();
+        for (Island island : preferredIslands) {
+            for (Coordinate c : island) {
+                alignments.put(c.match.token, c.match.vertex);
             }
+        }
 
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "{0} + {1}: Detect phrase matches", new Object[]{graph, witness});
+        if (LOG.isLoggable(Level.FINER)) {
+            for (Map.Entry<Token, VariantGraph.Vertex> tokenLink : alignments.entrySet()) {
+                LOG.log(Level.FINER, "{0} + {1}: Aligned token (incl transposed): {2} = {3}", new Object[]{graph, witness, tokenLink.getValue(), tokenLink.getKey()});
             }
+        }
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} + {1}: Detect phrase matches", new Object[]{graph, witness});
+        }
 
-            // Phase 2c: detect phrases and transpositions
-            phraseMatches = phraseMatchDetector.detect(alignments, graph, tokens);
+        // Phase 2c: detect phrases and transpositions
+        phraseMatches = phraseMatchDetector.detect(alignments, graph, tokens);
 
-            if (LOG.isLoggable(Level.FINER)) {
-                for (List<Match> phraseMatch : phraseMatches) {
-                    LOG.log(Level.FINER, "{0} + {1}: Phrase match: {2}", new Object[]{graph, witness, phraseMatch});
-                }
+        if (LOG.isLoggable(Level.FINER)) {
+            for (List<Match> phraseMatch : phraseMatches) {
+                LOG.log(Level.FINER, "{0} + {1}: Phrase match: {2}", new Object[]{graph, witness, phraseMatch});
             }
+        }
 
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "{0} + {1}: Detect transpositions", new Object[]{graph, witness});
-            }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} + {1}: Detect transpositions", new Object[]{graph, witness});
+        }
 
-            transpositions = transpositionDetector.detect(phraseMatches, graph);
+        transpositions = transpositionDetector.detect(phraseMatches, graph);
 
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "transpositions:{0}", transpositions);
-            }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "transpositions:{0}", transpositions);
+        }
 
-            if (LOG.isLoggable(Level.FINER)) {
-                for (List<Match> transposition : transpositions) {
-                    LOG.log(Level.FINER, "{0} + {1}: Transposition: {2}", new Object[]{graph, witness, transposition});
-                }
+        if (LOG.isLoggable(Level.FINER)) {
+            for (List<Match> transposition : transpositions) {
+                LOG.log(Level.FINER, "{0} + {1}: Transposition: {2}", new Object[]{graph, witness, transposition});
             }
+        }
 
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "{0} + {1}: Determine aligned tokens by filtering transpositions", new Object[]{graph, witness});
-            }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} + {1}: Determine aligned tokens by filtering transpositions", new Object[]{graph, witness});
+        }
 
-            // Filter out transposed tokens from aligned tokens
-            for (List<Match> transposedPhrase : transpositions) {
-                for (Match match : transposedPhrase) {
-                    alignments.remove(match.token);
-                }
+        // Filter out transposed tokens from aligned tokens
+        for (List<Match> transposedPhrase : transpositions) {
+            for (Match match : transposedPhrase) {
+                alignments.remove(match.token);
             }
+        }
 
-            if (LOG.isLoggable(Level.FINER)) {
-                for (Map.Entry<Token, VariantGraph.Vertex> alignment : alignments.entrySet()) {
-                    LOG.log(Level.FINER, "{0} + {1}: Alignment: {2} = {3}", new Object[]{graph, witness, alignment.getValue(), alignment.getKey()});
-                }
+        if (LOG.isLoggable(Level.FINER)) {
+            for (Map.Entry<Token, VariantGraph.Vertex> alignment : alignments.entrySet()) {
+                LOG.log(Level.FINER, "{0} + {1}: Alignment: {2} = {3}", new Object[]{graph, witness, alignment.getValue(), alignment.getKey()});
             }
+        }
 
-            // Phase 2d: and merge
-            merge(graph, tokens, alignments);
+        // Phase 2d: and merge
+        merge(graph, tokens, alignments);
 
-            // we filter out small transposed phrases over large distances
-            List<List<Match>> falseTranspositions = new ArrayList<>();
+        // we filter out small transposed phrases over large distances
+        List<List<Match>> falseTranspositions = new ArrayList<>();
 
-            // rank the variant graph
-            VariantGraphRanking ranking = VariantGraphRanking.of(graph);
+        // rank the variant graph, kept up-to-date by the merge
+        VariantGraphRanking ranking = ranking(graph);
 
-            for (List<Match> transposedPhrase : transpositions) {
-                Match match = transposedPhrase.get(0);
-                VariantGraph.Vertex v1 = witnessTokenVertices.get(match.token);
-                VariantGraph.Vertex v2 = match.vertex;
-                int distance = Math.abs(ranking.apply(v1) - ranking.apply(v2)) - 1;
-                if (distance > transposedPhrase.size() * 3) {
-                    falseTranspositions.add(transposedPhrase);
-                }
+        for (List<Match> transposedPhrase : transpositions) {
+            Match match = transposedPhrase.get(0);
+            VariantGraph.Vertex v1 = witnessTokenVertices.get(match.token);
+            VariantGraph.Vertex v2 = match.vertex;
+            int distance = Math.abs(ranking.apply(v1) - ranking.apply(v2)) - 1;
+            if (distance > transposedPhrase.size() * 3) {
+                falseTranspositions.add(transposedPhrase);
             }
+        }
 
-            transpositions.removeAll(falseTranspositions);
+        transpositions.removeAll(falseTranspositions);
 
-            // merge transpositions
-            if (mergeTranspositions) {
-                mergeTranspositions(graph, transpositions);
-            }
+        // merge transpositions
+        if (mergeTranspositions) {
+            mergeTranspositions(graph, transpositions);
+        }
 
-            updateTokenToVertexArray(tokens, witness);
+        updateTokenToVertexArray(tokens, witness);
 
-            if (LOG.isLoggable(Level.FINER)) {
-                LOG.log(Level.FINER, "!{0}: {1}", new Object[]{graph, StreamUtil.stream(graph.vertices()).map(Object::toString).collect(Collectors.joining(", "))});
-            }
+        if (LOG.isLoggable(Level.FINER)) {
+            LOG.log(Level.FINER, "!{0}: {1}", new Object[]{graph, StreamUtil.stream(graph.vertices()).map(Object::toString).collect(Collectors.joining(", "))});
         }
     }
 
@@ -219,9 +251,27 @@ public class DekkerAlgorithm extends CollationAlgorithm.Base implements Inspecta
         }
     }
 
+    /**
+     * Aligns another witness with the graph of the previous collation, adding it to the token index of the latter
+     * instead of rebuilding it; other graphs are collated from scratch.
+     */
     @Override
     public void collate(VariantGraph graph, Iterable<Token> tokens) {
-        throw new RuntimeException("Progressive alignment is not supported!");
+        if (tokenIndex == null || graph != indexedGraph) {
+            collate(graph, Collections.singletonList(tokens));
+            return;
+        }
+        final Witness witness = StreamUtil.stream(tokens)
+                .findFirst()
+                .map(Token::getWitness)
+                .orElseThrow(() -> new IllegalArgumentException("Empty witness"));
+        tokenIndex.addWitness(tokens);
+        this.vertex_array = Arrays.copyOf(vertex_array, tokenIndex.token_array.length);
+        try {
+            align(graph, tokens, witness);
+        } finally {
+            releaseRanking();
+        }
     }
 
     @Override
@@ -22,7 +22,6 @@ import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -49,7 +48,7 @@ public class PhraseMatchDetector {
             // - previous and base vertex should either be in the same transposition(s) or both aren't in any transpositions
             // - there should be a directed edge between previous and base vertex
             // - there may not be a longer path between previous and base vertex
-            boolean sameTranspositions = new HashSet<>(previous.transpositions()).equals(new HashSet<>(baseVertex.transpositions()));
+            boolean sameTranspositions = base.transpositionIndex().sameTranspositions(previous, baseVertex);
             boolean sameWitnesses = previous.witnesses().equals(baseVertex.witnesses());
             boolean directedEdge = previous.outgoing().containsKey(baseVertex);
             boolean isNear = sameTranspositions && sameWitnesses && directedEdge && (previous.outgoing().size() == 1 || baseVertex.incoming().size() == 1);
@@ -6,19 +6,20 @@ import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
 import eu.interedition.collatex.dekker.Match;
 import eu.interedition.collatex.dekker.token_index.TokenIndex;
+import eu.interedition.collatex.dekker.token_index.TokenIndexCache;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.SuffixArrays;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
-import static java.util.Collections.max;
-import static java.util.Comparator.comparingInt;
 
 /**
  * Created by Ronald Haentjens Dekker on 06/01/17.
@@ -52,8 +53,26 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
     public TokenIndex tokenIndex;
     // tokens are mapped to vertices by their position in the token array
     public VariantGraph.Vertex[] vertex_array;
+    // the graph, whose witnesses are indexed
+    private VariantGraph indexedGraph;
     private final Comparator<Token> comparator;
-    Score[][] cells;
+    private ISuffixArrayBuilder suffixArrayBuilder = SuffixArrays.defaultAlgorithm();
+    private TokenIndexCache tokenIndexCache;
+    private boolean linearSpace = false;
+    private boolean banded = false;
+    private boolean parallel = ForkJoinPool.getCommonPoolParallelism() > 1;
+    // the edit graph table: the score of each cell, and the type of its score along with the direction of its parent,
+    // packed into a byte (see trace())
+    int[][] scores;
+    byte[][] traceback;
+    private static final int FROM_UPPER_LEFT = 0;
+    private static final int FROM_LEFT = 1;
+    private static final int FROM_UPPER = 2;
+    // minimum number of cells of a table to fill in parallel, and the size of the tiles filled in parallel
+    private static final long PARALLEL_THRESHOLD = 1 << 20;
+    private static final int TILE_SIZE = 256;
+    // the initial number of columns on either side of the band's center
+    private static final int INITIAL_BAND_WIDTH = 32;
 
     public EditGraphAligner() {
         this(new EqualityTokenComparator());
@@ -63,13 +82,61 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
         this.comparator = comparator;
     }
 
+    /**
+     * Sets the algorithm, which builds the suffix array of the token index; picked depending on the input by default.
+     */
+    public void setSuffixArrayBuilder(ISuffixArrayBuilder suffixArrayBuilder) {
+        this.suffixArrayBuilder = suffixArrayBuilder;
+    }
+
+    /**
+     * Sets the cache of token indexes, so that repeated collations of the same witnesses skip deriving the suffix
+     * array, LCP array and blocks; none by default.
+     */
+    public void setTokenIndexCache(TokenIndexCache tokenIndexCache) {
+        this.tokenIndexCache = tokenIndexCache;
+    }
+
+    /**
+     * Sets whether to align in linear space, i.e. without holding the edit graph table of witness tokens by graph ranks,
+     * but recomputing parts of it in Hirschberg's divide-and-conquer fashion, which takes about twice as long; meant for
+     * very long witnesses. Off by default.
+     */
+    public void setLinearSpace(boolean linearSpace) {
+        this.linearSpace = linearSpace;
+    }
+
+    /**
+     * Sets whether to fill only the cells of the edit graph table within a band around the diagonals between anchors,
+     * i.e. matches, which are the only ones of their witness token and graph rank; the band is widened as long as a path
+     * leaving it might score higher than the path found within it, so that the score of the alignment is the one of the
+     * whole table. Meant for witnesses, which are close variants of each other, whose alignment it then finds in time
+     * and space proportional to the witness length and the band width; otherwise the band is widened up to the whole
+     * table. Off by default, and ignored when aligning in linear space.
+     */
+    public void setBanded(boolean banded) {
+        this.banded = banded;
+    }
+
+    /**
+     * Sets whether to fill large edit graph tables in parallel, over the common fork/join pool; on by default if the
+     * pool works in parallel. The alignment does not depend on it.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     @Override
     public void collate(VariantGraph graph, List<? extends Iterable<Token>> witnesses) {
-        // phase 1: matching phase
-        match(witnesses);
-
-        // phase 2: alignment phase
-        align(graph, witnesses);
+        try {
+            // phase 1: matching phase
+            match(witnesses);
+
+            // phase 2: alignment phase
+            align(graph, witnesses);
+        } finally {
+            releaseRanking();
+        }
     }
 
     private void match(List<? extends Iterable<Token>> witnesses) {
@@ -77,12 +144,14 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
             LOG.fine("Building token index from the tokens of all witnesses");
         }
 
-        this.tokenIndex = new TokenIndex(comparator, witnesses);
+        this.tokenIndex = new TokenIndex(comparator, witnesses, suffixArrayBuilder);
+        tokenIndex.setCache(tokenIndexCache);
         tokenIndex.prepare();
     }
 
     private void align(VariantGraph graph, List<? extends Iterable<Token>> witnesses) {
         this.vertex_array = new VariantGraph.Vertex[tokenIndex.token_array.length];
+        this.indexedGraph = graph;
         boolean firstWitness = true;
 
         for (Iterable<Token> tokens : witnesses) {
@@ -99,47 +168,70 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
                 continue;
             }
 
-            // align second, third, fourth witness etc.
-            if (LOG.isLoggable(Level.FINER)) {
-                LOG.log(Level.FINER, "{0} + {1}: {2} vs. {3}", new Object[]{graph, witness, graph.vertices(), tokens});
-            }
+            align(graph, tokens, witness);
+        }
+    }
 
-            // Phase 2a: Gather matches from the token index
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "{0} + {1}: Gather matches between variant graph and witness from token index", new Object[]{graph, witness});
-            }
+    // align second, third, fourth witness etc.
+    private void align(VariantGraph graph, Iterable<Token> tokens, Witness witness) {
+        if (LOG.isLoggable(Level.FINER)) {
+            LOG.log(Level.FINER, "{0} + {1}: {2} vs. {3}", new Object[]{graph, witness, graph.vertices(), tokens});
+        }
+
+        // Phase 2a: Gather matches from the token index
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} + {1}: Gather matches between variant graph and witness from token index", new Object[]{graph, witness});
+        }
 
-            // now we can create the space for the edit graph.. using arrays and stuff
-            // the horizontal size is the number of ranks in the graph starting from 0
-            VariantGraphRanking variantGraphRanking = VariantGraphRanking.of(graph);
-            Map<VariantGraph.Vertex, Integer> byVertex = variantGraphRanking.getByVertex();
-            List<Integer> variantGraphRanks = StreamUtil.stream(graph.vertices())//
-                .map(byVertex::get)//
-                .distinct()//
-                .collect(Collectors.toList());
+        // now we can create the space for the edit graph.. using arrays and stuff
+        // the horizontal size is the number of ranks in the graph starting from 0
+        VariantGraphRanking variantGraphRanking = ranking(graph);
+        Map<VariantGraph.Vertex, Integer> byVertex = variantGraphRanking.getByVertex();
+        List<Integer> variantGraphRanks = StreamUtil.stream(graph.vertices())//
+            .map(byVertex::get)//
+            .distinct()//
+            .collect(Collectors.toList());
 
-            // we leave in the rank of the start vertex, but remove the rank of the end vertex
-            variantGraphRanks.remove(variantGraphRanks.size() - 1);
+        // we leave in the rank of the start vertex, but remove the rank of the end vertex
+        variantGraphRanks.remove(variantGraphRanks.size() - 1);
 
-            // System.out.println("horizontal (graph, rank): " + variantGraphRanks);
+        // System.out.println("horizontal (graph, rank): " + variantGraphRanks);
 
 //            Map<Integer, Set<VariantGraph.Vertex>> vertexSetByRank = variantGraphRanking.getByRank();
 
-            // now the vertical stuff
-            List<Token> witnessTokens = StreamUtil.stream(tokens).collect(Collectors.toList());
-            List<Integer> tokensAsIndexList = asIndexList(tokens);
-            // System.out.println("vertical (next witness, token index): " + tokensAsIndexList);
+        // now the vertical stuff
+        List<Token> witnessTokens = StreamUtil.stream(tokens).collect(Collectors.toList());
+        List<Integer> tokensAsIndexList = asIndexList(tokens);
+        // System.out.println("vertical (next witness, token index): " + tokensAsIndexList);
 
-            MatchCube cube = new MatchCube(tokenIndex, tokens, vertex_array, variantGraphRanking);
-            fillNeedlemanWunschTable(variantGraphRanks, witnessTokens, tokensAsIndexList, cube);
+        MatchCube cube = new MatchCube(tokenIndex, tokens, vertex_array, variantGraphRanking);
+        final Iterator<Score> path = findPath(variantGraphRanks, witnessTokens, tokensAsIndexList, cube);
 
-            // debug only
-            // printScoringTable(variantGraphRanks, tokensAsIndexList);
+        Map<Token, VariantGraph.Vertex> aligned = alignMatchingTokens(path, cube);
+        merge(graph, tokens, aligned);
+        updateTokenToVertexArray(tokens, witness);
+    }
 
-            Map<Token, VariantGraph.Vertex> aligned = alignMatchingTokens(cube);
-            merge(graph, tokens, aligned);
-            updateTokenToVertexArray(tokens, witness);
+    /**
+     * @return the cells of the best path through the edit graph table of the given witness tokens by graph ranks, from
+     * the last cell of the table to, but excluding, the first one
+     */
+    Iterator<Score> findPath(List<Integer> variantGraphRanks, List<Token> witnessTokens, List<Integer> tokensAsIndexList, MatchCube cube) {
+        if (linearSpace) {
+            this.scores = null;
+            this.traceback = null;
+            return hirschberg(tokensAsIndexList.size(), variantGraphRanks.size(), cube).iterator();
+        } else if (banded) {
+            this.scores = null;
+            this.traceback = null;
+            return banded(tokensAsIndexList.size(), variantGraphRanks.size(), cube).iterator();
         }
+        fillNeedlemanWunschTable(variantGraphRanks, witnessTokens, tokensAsIndexList, cube);
+
+        // debug only
+        // printScoringTable(variantGraphRanks, tokensAsIndexList);
+
+        return new ScoreIterator(this.scores, this.traceback, 0, 0);
     }
 
     private List<Integer> asIndexList(Iterable<Token> tokens) {
@@ -154,46 +246,358 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
 
     private void fillNeedlemanWunschTable(List<Integer> variantGraphRanks, List<Token> witnessTokens, List<Integer> tokensAsIndexList, MatchCube cube) {
         // code below is partly taken from the CSA branch.
-        // init cells and scorer
-        this.cells = new Score[tokensAsIndexList.size()][variantGraphRanks.size()];
-        Scorer scorer = new Scorer(cube);
+        // init cells: a score and a traceback byte per cell
+        this.scores = new int[tokensAsIndexList.size()][variantGraphRanks.size()];
+        this.traceback = new byte[tokensAsIndexList.size()][variantGraphRanks.size()];
+        fill(cube, 0, 0, this.scores, this.traceback, parallel);
+    }
+
+    /**
+     * Fills the given table with the scores of the paths starting at cell (y0, x0), the table's first cell.
+     */
+    private static void fill(MatchCube cube, int y0, int x0, int[][] scores, byte[][] traceback, boolean parallel) {
+        final int rows = scores.length;
+        final int columns = scores[0].length;
 
         // init 0,0
-        this.cells[0][0] = new Score(Score.Type.empty, 0, 0, null, 0);
+        traceback[0][0] = trace(Score.Type.empty, FROM_UPPER_LEFT);
 
         // fill the first row with gaps
-        IntStream.range(1, variantGraphRanks.size()).forEach(x -> {
-            int previousX = x - 1;
-            this.cells[0][x] = scorer.gap(x, 0, this.cells[0][previousX]);
-        });
-
-        // fill the first column with gaps
-        IntStream.range(1, tokensAsIndexList.size()).forEach(y -> {
-            int previousY = y - 1;
-            this.cells[y][0] = scorer.gap(0, y, this.cells[previousY][0]);
-        });
-
-        // fill the remaining cells
-        // fill the rest of the cells in a y by x fashion
-        IntStream.range(1, tokensAsIndexList.size()).forEach(//
-            y -> IntStream.range(1, variantGraphRanks.size()).forEach(
-                x -> {
-                    int previousY = y - 1;
-                    int previousX = x - 1;
-                    Score fromUpperLeft = scorer.score(x, y, this.cells[previousY][previousX]);
-                    Score fromLeft = scorer.gap(x, y, this.cells[y][previousX]);
-                    Score fromUpper = calculateFromUpper(scorer, y, x, previousY, cube);
-                    Score max = max(asList(fromUpperLeft, fromLeft, fromUpper), comparingInt(score -> score.globalScore));
-                    this.cells[y][x] = max;
-                }));
-    }
-
-    private Map<Token, VariantGraph.Vertex> alignMatchingTokens(MatchCube cube) {
+        for (int x = 1; x < columns; x++) {
+            scores[0][x] = scores[0][x - 1] - 1;
+            traceback[0][x] = trace(Score.Type.deletion, FROM_LEFT);
+        }
+
+        if (!parallel || (long) rows * columns < PARALLEL_THRESHOLD) {
+            fill(cube, y0, x0, scores, traceback, 1, rows, 0, columns);
+            return;
+        }
+        // cells depend on their upper left, left and upper neighbours only, so that the tiles on an anti-diagonal of
+        // tiles can be filled in parallel, once the tiles of the previous one are filled
+        final int tileRows = (rows - 1 + TILE_SIZE - 1) / TILE_SIZE;
+        final int tileColumns = (columns + TILE_SIZE - 1) / TILE_SIZE;
+        for (int diagonal = 0; diagonal < tileRows + tileColumns - 1; diagonal++) {
+            final int d = diagonal;
+            IntStream.rangeClosed(Math.max(0, d - tileColumns + 1), Math.min(d, tileRows - 1)).parallel().forEach(tileRow -> {
+                final int tileColumn = d - tileRow;
+                fill(cube, y0, x0, scores, traceback,
+                    1 + tileRow * TILE_SIZE, Math.min(rows, 1 + (tileRow + 1) * TILE_SIZE),
+                    tileColumn * TILE_SIZE, Math.min(columns, (tileColumn + 1) * TILE_SIZE));
+            });
+        }
+    }
+
+    /**
+     * Fills the cells of the given rows and columns (upper bounds exclusive) of the given table, whose cells above and
+     * to the left of them are filled.
+     */
+    private static void fill(MatchCube cube, int y0, int x0, int[][] scores, byte[][] traceback, int fromRow, int toRow, int fromColumn, int toColumn) {
+        // fill the cells in a y by x fashion
+        for (int y = fromRow; y < toRow; y++) {
+            final int[] upperRow = scores[y - 1];
+            final int[] row = scores[y];
+            final byte[] tracebackRow = traceback[y];
+            for (int x = fromColumn; x < toColumn; x++) {
+                // on equal scores, the upper left cell is preferred over the left one, and the left one over the upper one
+                final boolean match = cube.hasMatch(y0 + y - 1, x0 + x - 1);
+                final Score.Type matchType = (match ? Score.Type.match : Score.Type.mismatch);
+                int score = Integer.MIN_VALUE;
+                byte trace = 0;
+
+                if (x > 0) {
+                    score = upperRow[x - 1] + (match ? 1 : -1);
+                    trace = trace(matchType, FROM_UPPER_LEFT);
+
+                    final int fromLeft = row[x - 1] - 1;
+                    if (fromLeft > score) {
+                        score = fromLeft;
+                        trace = trace(Score.Type.deletion, FROM_LEFT);
+                    }
+                }
+
+                // the first column of the whole table consists of gaps, as there are no matches at rank -1
+                final boolean upperIsMatch = cube.hasMatch(y0 + y - 2, x0 + x - 1);
+                final int fromUpper = upperRow[x] + (upperIsMatch && match ? 1 : -1);
+                if (fromUpper > score) {
+                    score = fromUpper;
+                    trace = trace(upperIsMatch ? matchType : Score.Type.addition, FROM_UPPER);
+                }
+
+                row[x] = score;
+                tracebackRow[x] = trace;
+            }
+        }
+    }
+
+    /**
+     * Finds a path through the edit graph table of the given size with the score of the path found by
+     * {@link #fillNeedlemanWunschTable(List, List, List, MatchCube)}, holding two rows of the table at a time: the
+     * table is split at its middle row, in a cell of an optimal path, found by scoring the paths from the start to the
+     * middle row and from the middle row to the end; both parts are split likewise, down to pairs of rows. Out of
+     * equally scored paths, the one found may differ from the one of the whole table.
+     *
+     * @return the cells of the path from the last cell of the table to, but excluding, the first one, each scored
+     * relative to the start of the part it has been found in
+     */
+    private static List<Score> hirschberg(int rows, int columns, MatchCube cube) {
+        final List<Score> path = new ArrayList<>(rows + columns);
+        hirschberg(cube, 0, 0, rows - 1, columns - 1, path);
+        return path;
+    }
+
+    private static void hirschberg(MatchCube cube, int y0, int x0, int y1, int x1, List<Score> path) {
+        if (y1 - y0 <= 1) {
+            final int[][] scores = new int[y1 - y0 + 1][x1 - x0 + 1];
+            final byte[][] traceback = new byte[y1 - y0 + 1][x1 - x0 + 1];
+            fill(cube, y0, x0, scores, traceback, false);
+            new ScoreIterator(scores, traceback, y0, x0).forEachRemaining(path::add);
+            return;
+        }
+        final int middle = (y0 + y1) >>> 1;
+        final int[] fromStart = scoresFromStart(cube, y0, x0, middle, x1);
+        final int[] toEnd = scoresToEnd(cube, middle, x0, y1, x1);
+        int split = 0;
+        for (int x = 1; x < fromStart.length; x++) {
+            if (fromStart[x] + toEnd[x] > fromStart[split] + toEnd[split]) {
+                split = x;
+            }
+        }
+        // the path is collected backwards
+        hirschberg(cube, middle, x0 + split, y1, x1, path);
+        hirschberg(cube, y0, x0, middle, x0 + split, path);
+    }
+
+    /**
+     * @return the scores of the best paths from cell (y0, x0) to each cell of row y1 up to column x1
+     */
+    private static int[] scoresFromStart(MatchCube cube, int y0, int x0, int y1, int x1) {
+        int[] upperRow = new int[x1 - x0 + 1];
+        int[] row = new int[x1 - x0 + 1];
+        for (int x = 1; x < row.length; x++) {
+            upperRow[x] = upperRow[x - 1] - 1;
+        }
+        for (int y = y0 + 1; y <= y1; y++) {
+            for (int x = 0; x < row.length; x++) {
+                int score = upperRow[x] + upperScore(cube, y, x0 + x);
+                if (x > 0) {
+                    score = Math.max(score, Math.max(upperRow[x - 1] + diagonalScore(cube, y, x0 + x), row[x - 1] - 1));
+                }
+                row[x] = score;
+            }
+            final int[] swap = upperRow;
+            upperRow = row;
+            row = swap;
+        }
+        return upperRow;
+    }
+
+    /**
+     * @return the scores of the best paths from each cell of row y0 from column x0 on to cell (y1, x1)
+     */
+    private static int[] scoresToEnd(MatchCube cube, int y0, int x0, int y1, int x1) {
+        int[] lowerRow = new int[x1 - x0 + 1];
+        int[] row = new int[x1 - x0 + 1];
+        for (int x = lowerRow.length - 2; x >= 0; x--) {
+            lowerRow[x] = lowerRow[x + 1] - 1;
+        }
+        for (int y = y1 - 1; y >= y0; y--) {
+            for (int x = row.length - 1; x >= 0; x--) {
+                int score = lowerRow[x] + upperScore(cube, y + 1, x0 + x);
+                if (x < row.length - 1) {
+                    score = Math.max(score, Math.max(lowerRow[x + 1] + diagonalScore(cube, y + 1, x0 + x + 1), row[x + 1] - 1));
+                }
+                row[x] = score;
+            }
+            final int[] swap = lowerRow;
+            lowerRow = row;
+            row = swap;
+        }
+        return lowerRow;
+    }
+
+    // the score of a step to cell (y, x) from its upper left neighbour
+    private static int diagonalScore(MatchCube cube, int y, int x) {
+        return (cube.hasMatch(y - 1, x - 1) ? 1 : -1);
+    }
+
+    // the score of a step to cell (y, x) from its upper neighbour
+    private static int upperScore(MatchCube cube, int y, int x) {
+        return (cube.hasMatch(y - 2, x - 1) && cube.hasMatch(y - 1, x - 1) ? 1 : -1);
+    }
+
+    /**
+     * Finds a path through the edit graph table of the given size, filling the cells within a band around the line
+     * through the longest chain of anchors, which ascend in both witness token and graph rank. The band is doubled in
+     * width as long as a path leaving it {@link #mayLeaveBand(int[], int[][], int, int) might score higher} than the
+     * path found within it.
+     *
+     * @return the cells of the path from the last cell of the table to, but excluding, the first one
+     */
+    private static List<Score> banded(int rows, int columns, MatchCube cube) {
+        final int[] centers = bandCenters(rows, columns, cube.uniqueMatches());
+        for (int width = INITIAL_BAND_WIDTH; ; width *= 2) {
+            final int[] bandStarts = new int[rows];
+            final int[][] scores = new int[rows][];
+            final byte[][] traceback = new byte[rows][];
+            for (int y = 0; y < rows; y++) {
+                bandStarts[y] = Math.max(0, centers[y] - width);
+                final int bandEnd = Math.min(columns - 1, centers[y + 1] + width);
+                scores[y] = new int[bandEnd - bandStarts[y] + 1];
+                traceback[y] = new byte[bandEnd - bandStarts[y] + 1];
+            }
+            fillBand(cube, bandStarts, scores, traceback);
+
+            final int score = scores[rows - 1][scores[rows - 1].length - 1];
+            if (width >= columns || !mayLeaveBand(bandStarts, scores, columns, score)) {
+                final List<Score> path = new ArrayList<>(rows + columns);
+                new ScoreIterator(scores, traceback, bandStarts).forEachRemaining(path::add);
+                return path;
+            }
+        }
+    }
+
+    /**
+     * Bounds the score of paths leaving the band: up to its last cell within the band, such a path scores no more than
+     * the band's cell, and from there on, it gains at most one point per row still to go, less one for each column to go
+     * in excess of those rows.
+     *
+     * @return whether a path leaving the band might score higher than the given score of the path within it
+     */
+    private static boolean mayLeaveBand(int[] bandStarts, int[][] scores, int columns, int score) {
+        final int rows = scores.length;
+        for (int y = 0; y < rows; y++) {
+            for (int column = 0; column < scores[y].length; column++) {
+                final int x = bandStarts[y] + column;
+                if (scores[y][column] == Integer.MIN_VALUE) {
+                    continue;
+                }
+                if (!outsideBand(bandStarts, scores, columns, y, x + 1)
+                        && !outsideBand(bandStarts, scores, columns, y + 1, x)
+                        && !outsideBand(bandStarts, scores, columns, y + 1, x + 1)) {
+                    continue;
+                }
+                final int remainingRows = rows - 1 - y;
+                final int remainingColumns = columns - 1 - x;
+                if (scores[y][column] + remainingRows - Math.max(0, remainingColumns - remainingRows) > score) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // whether the given cell is part of the table, but not of the band
+    private static boolean outsideBand(int[] bandStarts, int[][] scores, int columns, int y, int x) {
+        return (y < scores.length && x < columns && (x < bandStarts[y] || x >= bandStarts[y] + scores[y].length));
+    }
+
+    /**
+     * @return the column of the band's center for each row of the table, and the last column for the row after it
+     */
+    private static int[] bandCenters(int rows, int columns, long[] anchors) {
+        // the longest chain of anchors ascending in rank, out of the anchors sorted by token
+        final int[] chainEnds = new int[anchors.length];
+        final int[] predecessors = new int[anchors.length];
+        int chainLength = 0;
+        for (int a = 0; a < anchors.length; a++) {
+            final int rank = (int) anchors[a];
+            int low = 0;
+            int high = chainLength;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if ((int) anchors[chainEnds[mid]] < rank) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            predecessors[a] = (low > 0 ? chainEnds[low - 1] : -1);
+            chainEnds[low] = a;
+            chainLength = Math.max(chainLength, low + 1);
+        }
+        final int[] chain = new int[chainLength];
+        for (int c = chainLength - 1, a = (chainLength > 0 ? chainEnds[chainLength - 1] : -1); c >= 0; c--, a = predecessors[a]) {
+            chain[c] = a;
+        }
+
+        // interpolate between the anchors' cells, the first and the last cell of the table
+        final int[] centers = new int[rows + 1];
+        int previousY = 0;
+        int previousX = 0;
+        for (int c = 0; c <= chainLength; c++) {
+            final int y = (c < chainLength ? (int) (anchors[chain[c]] >> 32) + 1 : rows - 1);
+            final int x = (c < chainLength ? (int) anchors[chain[c]] + 1 : columns - 1);
+            for (int row = previousY + 1; row <= y; row++) {
+                centers[row] = previousX + (int) ((long) (x - previousX) * (row - previousY) / (y - previousY));
+            }
+            previousY = Math.max(previousY, y);
+            previousX = x;
+        }
+        centers[rows] = columns - 1;
+        return centers;
+    }
+
+    /**
+     * Fills a band of the edit graph table, each row of which holds the cells from the given column on.
+     */
+    private static void fillBand(MatchCube cube, int[] bandStarts, int[][] scores, byte[][] traceback) {
+        // init 0,0 and fill the first row with gaps
+        traceback[0][0] = trace(Score.Type.empty, FROM_UPPER_LEFT);
+        for (int x = 1; x < scores[0].length; x++) {
+            scores[0][x] = scores[0][x - 1] - 1;
+            traceback[0][x] = trace(Score.Type.deletion, FROM_LEFT);
+        }
+
+        for (int y = 1; y < scores.length; y++) {
+            final int[] row = scores[y];
+            final byte[] tracebackRow = traceback[y];
+            for (int column = 0; column < row.length; column++) {
+                // as in fill(), with cells outside of the band being unreachable
+                final int x = bandStarts[y] + column;
+                final boolean match = cube.hasMatch(y - 1, x - 1);
+                final Score.Type matchType = (match ? Score.Type.match : Score.Type.mismatch);
+                int score = Integer.MIN_VALUE;
+                byte trace = 0;
+
+                final int upperLeft = bandScore(bandStarts, scores, y - 1, x - 1);
+                if (upperLeft != Integer.MIN_VALUE) {
+                    score = upperLeft + (match ? 1 : -1);
+                    trace = trace(matchType, FROM_UPPER_LEFT);
+                }
+                if (column > 0 && row[column - 1] != Integer.MIN_VALUE && row[column - 1] - 1 > score) {
+                    score = row[column - 1] - 1;
+                    trace = trace(Score.Type.deletion, FROM_LEFT);
+                }
+                final int upper = bandScore(bandStarts, scores, y - 1, x);
+                if (upper != Integer.MIN_VALUE) {
+                    final boolean upperIsMatch = cube.hasMatch(y - 2, x - 1);
+                    final int fromUpper = upper + (upperIsMatch && match ? 1 : -1);
+                    if (fromUpper > score) {
+                        score = fromUpper;
+                        trace = trace(upperIsMatch ? matchType : Score.Type.addition, FROM_UPPER);
+                    }
+                }
+
+                row[column] = score;
+                tracebackRow[column] = trace;
+            }
+        }
+    }
+
+    private static int bandScore(int[] bandStarts, int[][] scores, int y, int x) {
+        final int column = x - bandStarts[y];
+        return (x < 0 || column < 0 || column >= scores[y].length ? Integer.MIN_VALUE : scores[y][column]);
+    }
+
+    private static byte trace(Score.Type type, int direction) {
+        return (byte) (type.ordinal() << 2 | direction);
+    }
+
+    private Map<Token, VariantGraph.Vertex> alignMatchingTokens(Iterator<Score> scores, MatchCube cube) {
         // using the score iterator..
         // find all the matches
         // later for the transposition detection, we also want to keep track of all the additions, omissions, and replacements
         Map<Token, VariantGraph.Vertex> aligned = new HashMap<>();
-        ScoreIterator scores = new ScoreIterator(this.cells);
         Set<VariantGraph.Vertex> matchedVertices = new HashSet<>();
         while (scores.hasNext()) {
             Score score = scores.next();
@@ -209,32 +613,19 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
         return aligned;
     }
 
-    private Score calculateFromUpper(Scorer scorer, int y, int x, int previousY, MatchCube matchCube) {
-        boolean upperIsMatch = matchCube.hasMatch(previousY - 1, x - 1);
-        return upperIsMatch //
-            ? scorer.score(x, y, this.cells[previousY][x]) //
-            : scorer.gap(x, y, this.cells[previousY][x]);
-    }
-
     private void printScoringTable(List<Integer> verticesAsRankList, List<Integer> tokensAsIndexList) {
         // print the scoring table for debugging reasons
         for (int y = 0; y < tokensAsIndexList.size(); y++) {
             System.out.print("|");
             for (int x = 0; x < verticesAsRankList.size(); x++) {
-                Score cell = cells[y][x];
-                String value;
-                if (cell == null) {
-                    value = "unscored";
+                String value = "" + scores[y][x];
+                if (traceback[y][x] >> 2 == Score.Type.match.ordinal()) {
+                    value += "M";
                 } else {
-                    value = "" + cell.getGlobalScore();
-                    if (cell.type == Score.Type.match) {
-                        value += "M";
-                    } else {
-                        value += " ";
-                    }
-                    if (cell.getGlobalScore() > -1) {
-                        value = " " + value;
-                    }
+                    value += " ";
+                }
+                if (scores[y][x] > -1) {
+                    value = " " + value;
                 }
                 System.out.print(value + "|");
             }
@@ -283,9 +674,23 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
         }
     }
 
+    /**
+     * Aligns another witness with the graph of the previous collation, adding it to the token index of the latter
+     * instead of rebuilding it; other graphs are collated from scratch.
+     */
     @Override
     public void collate(VariantGraph against, Iterable<Token> witness) {
-        collate(against, Arrays.asList(witness));
+        if (tokenIndex == null || against != indexedGraph) {
+            collate(against, Arrays.asList(witness));
+            return;
+        }
+        tokenIndex.addWitness(witness);
+        this.vertex_array = Arrays.copyOf(vertex_array, tokenIndex.token_array.length);
+        try {
+            align(against, witness, witness.iterator().next().getWitness());
+        } finally {
+            releaseRanking();
+        }
     }
 
     public static class Score {
@@ -336,57 +741,54 @@ public class EditGraphAligner extends CollationAlgorithm.Base {
         }
     }
 
-    class Scorer {
-        private final MatchCube matchCube;
-
-        public Scorer(MatchCube matchCube) {
-            this.matchCube = matchCube;
-        }
+    private static class ScoreIterator implements Iterator<Score> {
+        private static final Score.Type[] TYPES = Score.Type.values();
 
-        public Score gap(int x, int y, Score parent) {
-            Score.Type type = determineType(x, y, parent);
-            return new Score(type, x, y, parent, parent.globalScore - 1);
+        int y;
+        int x;
+        private final int[][] scores;
+        private final byte[][] traceback;
+        // the position of the table within the edit graph table
+        private final int y0;
+        private final int x0;
+        // for bands of the edit graph table, the column of the first cell of each row
+        private final int[] bandStarts;
+
+        ScoreIterator(int[][] scores, byte[][] traceback, int y0, int x0) {
+            this(scores, traceback, y0, x0, null);
         }
 
-        public Score score(int x, int y, Score parent) {
-            int rank = (x - 1);
-            if (this.matchCube.hasMatch(y - 1, rank)) {
-                Match match = this.matchCube.getMatch(y - 1, rank);
-                return new Score(Score.Type.match, x, y, parent, parent.globalScore + 1);
-            }
-            return new Score(Score.Type.mismatch, x, y, parent, parent.globalScore - 1);
+        ScoreIterator(int[][] scores, byte[][] traceback, int[] bandStarts) {
+            this(scores, traceback, 0, 0, bandStarts);
         }
 
-        private Score.Type determineType(int x, int y, Score parent) {
-            if (x == parent.x) {
-                return Score.Type.addition;
-            }
-            if (y == parent.y) {
-                return Score.Type.deletion;
-            }
-            return Score.Type.empty;
+        private ScoreIterator(int[][] scores, byte[][] traceback, int y0, int x0, int[] bandStarts) {
+            this.scores = scores;
+            this.traceback = traceback;
+            this.y0 = y0;
+            this.x0 = x0;
+            this.bandStarts = bandStarts;
+            this.y = y0 + traceback.length - 1;
+            this.x = x0 + (bandStarts == null ? 0 : bandStarts[traceback.length - 1]) + traceback[traceback.length - 1].length - 1;
         }
-    }
-
-    private static class ScoreIterator implements Iterator<Score> {
-        Integer y;
-        Integer x;
-        private Score[][] matrix;
 
-        ScoreIterator(Score[][] matrix) {
-            this.matrix = matrix;
-            this.x = matrix[0].length - 1;
-            this.y = matrix.length - 1;
+        // the column of the given cell in the table
+        private int column(int y, int x) {
+            return x - x0 - (bandStarts == null ? 0 : bandStarts[y - y0]);
         }
 
         @Override
         public boolean hasNext() {
-            return !(this.x == 0 && this.y == 0);
+            return !(this.x == x0 && this.y == y0);
         }
 
         @Override
         public Score next() {
-            Score currentScore = this.matrix[this.y][this.x];
+            final int trace = this.traceback[this.y - y0][column(this.y, this.x)];
+            final int direction = trace & 3;
+            final Score currentScore = new Score(TYPES[trace >> 2], this.x, this.y, null, this.scores[this.y - y0][column(this.y, this.x)]);
+            currentScore.previousX = (direction == FROM_UPPER ? this.x : this.x - 1);
+            currentScore.previousY = (direction == FROM_LEFT ? this.y : this.y - 1);
             this.x = currentScore.previousX;
             this.y = currentScore.previousY;
             return currentScore;
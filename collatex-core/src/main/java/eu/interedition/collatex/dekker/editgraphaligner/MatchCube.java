@@ -9,10 +9,9 @@ import eu.interedition.collatex.dekker.token_index.Block;
 import eu.interedition.collatex.dekker.token_index.TokenIndex;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Created by Ronald Haentjens Dekker on 08/01/17.
@@ -20,7 +19,12 @@ import java.util.stream.Collectors;
  * This class builds a cube of matches, given a VariantGraphRanking, a TokenComparator and the next witness.
  */
 public class MatchCube {
-    private final Map<MatchCoordinate, Match> matches = new HashMap<>();
+    // an open-addressing hash table of matches, keyed by their coordinates (position in witness, starting from zero,
+    // and rank in the variant graph), packed into a long; probed linearly
+    private static final long EMPTY = -1L;
+    private long[] keys = newKeys(16);
+    private Match[] matches = new Match[16];
+    private int size = 0;
 
     public MatchCube(TokenIndex tokenIndex, //
                      Iterable<Token> witnessTokens,//
@@ -29,33 +33,29 @@ public class MatchCube {
 
         Witness witness = witnessTokens.iterator().next().getWitness();
         int startTokenPositionForWitness = tokenIndex.getStartTokenPositionForWitness(witness);
-        List<Block.Instance> instances = tokenIndex.getBlockInstancesForWitness(witness);
-        for (Block.Instance witnessInstance : instances) {
-            // System.out.println("Debug creating matches for witness block instance: "+witnessInstance);
-            // for every instance of a block in the witness we need to fetch the corresponding graph instances of the block
-            // calculate graph block instances
-            // fetch block
-            Block block = witnessInstance.block;
-            List<Block.Instance> allInstances = block.getAllInstances();
-            List<Block.Instance> graphInstances = allInstances.stream()//
-                .filter(instance -> instance.start_token < startTokenPositionForWitness)//
-                .collect(Collectors.toList());
+        int ordinal = tokenIndex.getWitnessOrdinal(witness);
+        for (int instance = tokenIndex.witness_offsets[ordinal]; instance < tokenIndex.witness_offsets[ordinal + 1]; instance++) {
+            // for every instance of a block in the witness we need to fetch the corresponding graph instances of the block,
+            // which are the occurrences of the block starting before the witness
+            int blockId = tokenIndex.witness_block_array[instance];
+            Block block = tokenIndex.blocks.get(blockId);
+            int witnessInstanceStart = tokenIndex.witness_start_token_array[instance];
+            int graphInstancesEnd = tokenIndex.getOccurrencesEndBefore(blockId, startTokenPositionForWitness);
             // now for every graph block instance we have to create matches
-            for (Block.Instance graphInstance : graphInstances) {
-                int graph_start_token = graphInstance.start_token;
+            for (int graphInstance = tokenIndex.block_offsets[blockId]; graphInstance < graphInstancesEnd; graphInstance++) {
+                int graph_start_token = tokenIndex.block_occurrence_array[graphInstance];
                 for (int i = 0; i < block.length; i++) {
                     VariantGraph.Vertex v = vertex_array[graph_start_token + i];
                     if (v == null) {
                         throw new RuntimeException("Vertex is null for token \"" + graph_start_token + i + "\" that is supposed to be mapped to a vertex in the graph!");
                     }
                     int rank = variantGraphRanking.apply(v) - 1;
-                    int witnessStartToken = witnessInstance.start_token + i;
+                    int witnessStartToken = witnessInstanceStart + i;
                     int row = witnessStartToken - startTokenPositionForWitness;
                     Token token = tokenIndex.token_array[witnessStartToken];
                     Match match = new Match(v, token);
-                    MatchCoordinate coordinate = new MatchCoordinate(row, rank);
 //                    System.out.println("match:[" + row + "," + rank + "]:" + token);
-                    matches.put(coordinate, match);
+                    put(key(row, rank), match);
                 }
             }
         }
@@ -66,36 +66,77 @@ public class MatchCube {
     }
 
     public boolean hasMatch(int y, int x) {
-        MatchCoordinate c = new MatchCoordinate(y, x);
-        return matches.containsKey(c);
+        return getMatch(y, x) != null;
     }
 
     public Match getMatch(int y, int x) {
-        MatchCoordinate c = new MatchCoordinate(y, x);
-        return matches.get(c);
-    }
-
-    class MatchCoordinate {
-        final int tokenIndex; // position in witness, starting from zero
-        final int rankInVG; // rank in the variant graph
-
-        public MatchCoordinate(int tokenIndex, int rankInVG) {
-            this.tokenIndex = tokenIndex;
-            this.rankInVG = rankInVG;
+        if (y < 0 || x < 0) {
+            return null;
+        }
+        final long key = key(y, x);
+        for (int slot = slot(key, keys.length); keys[slot] != EMPTY; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) {
+                return matches[slot];
+            }
         }
+        return null;
+    }
 
-        @Override
-        public int hashCode() {
-            return tokenIndex * 72 + rankInVG;
+    /**
+     * @return the coordinates of the matches, which are the only ones of their token and of their rank, packed as
+     * <code>(long) token &lt;&lt; 32 | rank</code> and sorted
+     */
+    public long[] uniqueMatches() {
+        final Map<Integer, Integer> matchesByToken = new HashMap<>();
+        final Map<Integer, Integer> matchesByRank = new HashMap<>();
+        for (long key : keys) {
+            if (key != EMPTY) {
+                matchesByToken.merge((int) (key >> 32), 1, Integer::sum);
+                matchesByRank.merge((int) key, 1, Integer::sum);
+            }
         }
+        return Arrays.stream(keys)
+            .filter(key -> key != EMPTY && matchesByToken.get((int) (key >> 32)) == 1 && matchesByRank.get((int) key) == 1)
+            .sorted()
+            .toArray();
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof MatchCoordinate)) {
-                return false;
+    private void put(long key, Match match) {
+        if (2 * (size + 1) > keys.length) {
+            final long[] oldKeys = keys;
+            final Match[] oldMatches = matches;
+            keys = newKeys(2 * oldKeys.length);
+            matches = new Match[2 * oldKeys.length];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY) {
+                    put(oldKeys[slot], oldMatches[slot]);
+                }
             }
-            MatchCoordinate other = (MatchCoordinate) obj;
-            return this.tokenIndex == other.tokenIndex && this.rankInVG == other.rankInVG;
         }
+        int slot = slot(key, keys.length);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        matches[slot] = match;
+    }
+
+    private static long key(int y, int x) {
+        return ((long) y << 32) | x;
+    }
+
+    // Fibonacci hashing of the key to a slot of a table, whose length is a power of two
+    private static int slot(long key, int length) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(length)));
+    }
+
+    private static long[] newKeys(int length) {
+        final long[] keys = new long[length];
+        Arrays.fill(keys, EMPTY);
+        return keys;
     }
 }
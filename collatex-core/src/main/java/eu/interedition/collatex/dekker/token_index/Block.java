@@ -17,8 +17,8 @@ public class Block {
     // end = end position in suffix array
     public final int end;
     // depth = number of witnesses this block of text occurs in
-    // Note: depth is lazy initialized
-    private Integer depth;
+    // Note: depth is computed by the token index while splitting the LCP array, and lazily for other blocks
+    private int depth;
 
     // For building blocks only
     public Block(TokenIndex tokenIndex, int suffix_start_position, int length) {
@@ -34,11 +34,19 @@ public class Block {
         this.start = start;
         this.end = end;
         this.length = length;
-        this.depth = null;
+        this.depth = -1;
+    }
+
+    public Block(TokenIndex tokenIndex, int start, int end, int length, int depth) {
+        this.tokenIndex = tokenIndex;
+        this.start = start;
+        this.end = end;
+        this.length = length;
+        this.depth = depth;
     }
 
     public int getDepth() {
-        if (depth == null) {
+        if (depth < 0) {
             depth = calculateDepth();
         }
         return depth;
@@ -86,11 +94,11 @@ public class Block {
 
     private int calculateDepth() {
         // the same block can occur multiple times in one witness
-        Set<Witness> witnesses = new HashSet<>();
-        for (Block.Instance instance : getAllInstances()) {
-            witnesses.add(instance.getWitness());
+        BitSet witnesses = new BitSet();
+        for (int i = start; i <= end; i++) {
+            witnesses.set(tokenIndex.witness_ordinal_array[tokenIndex.suffix_array[i]]);
         }
-        return witnesses.size();
+        return witnesses.cardinality();
     }
 
     public static class Instance {
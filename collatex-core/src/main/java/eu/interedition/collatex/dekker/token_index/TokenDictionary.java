@@ -0,0 +1,76 @@
+package eu.interedition.collatex.dekker.token_index;
+
+import eu.interedition.collatex.Token;
+import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.matching.StrictEqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleToken;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Maps tokens to dense integer classes, all tokens being equal according to a comparator sharing the same class.
+ * <p>
+ * Classes are assigned in the order in which tokens are first encountered, so that suffixes of the encoded token array
+ * sort like suffixes of the token array with tokens identified by their first occurrence. Separators between witnesses
+ * are reserved classes of their own, assigned in the same sequence.
+ * <p>
+ * For the equality comparators, tokens are looked up by their (normalized) content in a hash map; other comparators
+ * are consulted via a sorted map.
+ */
+public class TokenDictionary {
+
+    private final Map<Object, Integer> classes;
+    private final Function<Token, Object> key;
+    private int size = 0;
+
+    public TokenDictionary(Comparator<Token> comparator) {
+        if (comparator.getClass() == EqualityTokenComparator.class) {
+            this.classes = new HashMap<>();
+            this.key = token -> ((SimpleToken) token).getNormalized();
+        } else if (comparator.getClass() == StrictEqualityTokenComparator.class) {
+            this.classes = new HashMap<>();
+            this.key = token -> ((SimpleToken) token).getContent();
+        } else {
+            @SuppressWarnings("unchecked")
+            final Map<Object, Integer> sorted = (Map<Object, Integer>) (Map<?, Integer>) new TreeMap<Token, Integer>(comparator);
+            this.classes = sorted;
+            this.key = token -> token;
+        }
+    }
+
+    /**
+     * @return the class of the given token, assigned on first request
+     */
+    public int classOf(Token token) {
+        final Integer existing = classes.putIfAbsent(key.apply(token), size);
+        return (existing == null ? size++ : existing);
+    }
+
+    /**
+     * @return the class of the given token, or <code>-1</code> if none has been assigned to it
+     */
+    public int lookup(Token token) {
+        if (token instanceof TokenIndex.MarkerToken) {
+            return -1;
+        }
+        return classes.getOrDefault(key.apply(token), -1);
+    }
+
+    /**
+     * @return a new class, reserved for a separator, which no token belongs to
+     */
+    public int separator() {
+        return size++;
+    }
+
+    /**
+     * @return the number of classes assigned so far
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -2,9 +2,9 @@ package eu.interedition.collatex.dekker.token_index;
 
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.Witness;
-import eu.interedition.collatex.suffixarray.SAIS;
+import eu.interedition.collatex.suffixarray.ChildTable;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
 import eu.interedition.collatex.suffixarray.SuffixArrays;
-import eu.interedition.collatex.suffixarray.SuffixData;
 import eu.interedition.collatex.util.StreamUtil;
 
 import java.util.*;
@@ -13,17 +13,34 @@ import java.util.*;
  * Created by ronald on 4/20/15.
  */
 public class TokenIndex {
-    private final List<? extends Iterable<Token>> witnesses;
+    private final List<Iterable<Token>> witnesses;
     private final Comparator<Token> comparator;
+    private final ISuffixArrayBuilder suffixArrayBuilder;
     //TODO: not sure this functionality should be in this class or in a separate class
     private Map<Witness, Integer> witnessToStartToken;
     private Map<Witness, Integer> witnessToEndToken;
     public Token[] token_array;
+    // token classes, equal tokens sharing a class, and marker tokens encoded as separators; see TokenDictionary
+    public int[] token_class_array;
+    // ordinal of the witness each token belongs to, marker tokens belonging to the witness they close
+    public int[] witness_ordinal_array;
     //END witness data
     public int[] suffix_array;
     public int[] LCP_array;
+    // child table over the LCP array, for top-down traversals of blocks; rebuilt on demand after adding witnesses
+    public ChildTable child_table;
     public List<Block> blocks;
-    private Map<Witness, List<Block.Instance>> witnessToBlockInstances;
+    // start tokens of the occurrences of each block, ascending; block b occupies [block_offsets[b], block_offsets[b + 1])
+    public int[] block_offsets;
+    public int[] block_occurrence_array;
+    // block instances of each witness, sorted by block and start token;
+    // witness w occupies [witness_offsets[w], witness_offsets[w + 1]) in witness order
+    public int[] witness_offsets;
+    public int[] witness_block_array;
+    public int[] witness_start_token_array;
+    private Map<Witness, Integer> witnessToOrdinal;
+    private TokenDictionary dictionary;
+    private TokenIndexCache cache;
 
 
     public TokenIndex(Comparator<Token> comparator, Iterable<Token>... witness) {
@@ -31,8 +48,25 @@ public class TokenIndex {
     }
 
     public TokenIndex(Comparator<Token> comparator, List<? extends Iterable<Token>> witnesses) {
-        this.witnesses = witnesses;
-        this.comparator = new MarkerTokenComparator(comparator);
+        this(comparator, witnesses, SuffixArrays.defaultAlgorithm());
+    }
+
+    public TokenIndex(Comparator<Token> comparator, List<? extends Iterable<Token>> witnesses, ISuffixArrayBuilder suffixArrayBuilder) {
+        this.witnesses = new ArrayList<>(witnesses);
+        this.comparator = comparator;
+        this.suffixArrayBuilder = suffixArrayBuilder;
+    }
+
+    /**
+     * Sets the cache, from which the suffix array, LCP array and blocks are loaded on {@link #prepare() preparation}, if
+     * the same witnesses have been indexed before, and to which they are stored otherwise.
+     */
+    public void setCache(TokenIndexCache cache) {
+        this.cache = cache;
+    }
+
+    public Comparator<Token> getComparator() {
+        return comparator;
     }
 
     public int getStartTokenPositionForWitness(Witness witness) {
@@ -40,39 +74,380 @@ public class TokenIndex {
     }
 
     // 1. prepare token array
-    // 2. derive the suffix array
-    // 3. derive LCP array
-    // 4. derive LCP intervals
+    // 2. encode tokens as integer classes
+    // 3. derive the suffix array
+    // 4. derive LCP array
+    // 5. derive LCP intervals
     // TODO: we do not have to store witnesses!
     public void prepare() {
         this.token_array = this.prepareTokenArray();
-        SuffixData suffixData = SuffixArrays.createWithLCP(token_array, new SAIS(), comparator);
-        this.suffix_array = suffixData.getSuffixArray();
-        this.LCP_array = suffixData.getLCP();
+        this.dictionary = new TokenDictionary(comparator);
+        this.witness_ordinal_array = prepareWitnessOrdinalArray();
+        this.token_class_array = new int[token_array.length];
+        encodeTokens(0);
+        if (cache != null && cache.load(this)) {
+            this.child_table = ChildTable.of(LCP_array);
+            constructOccurrenceTables();
+            return;
+        }
+        if (token_class_array.length == 0) {
+            this.suffix_array = new int[0];
+            this.LCP_array = new int[0];
+        } else {
+            final int length = token_class_array.length;
+            this.suffix_array = buildSuffixArray(0, length);
+            this.LCP_array = (isMemoryTight(length)
+                    ? SuffixArrays.computeLCPInPlace(token_class_array, 0, length, suffix_array)
+                    : SuffixArrays.computeLCP(token_class_array, 0, length, suffix_array));
+        }
+        this.child_table = ChildTable.of(LCP_array);
         this.blocks = splitLCP_ArrayIntoIntervals();
-        constructWitnessToBlockInstancesMap();
+        constructOccurrenceTables();
+        if (cache != null) {
+            cache.store(this);
+        }
+    }
+
+    /**
+     * Builds the suffix array of the given range of token classes on a copy of them, as builders may expect their input
+     * to start at zero, to be followed by trailing cells, or to consist of positive symbols, ending before a zero:
+     * classes are shifted by one and followed by {@link SuffixArrays#MAX_EXTRA_TRAILING_SPACE} zeros, like
+     * {@link eu.interedition.collatex.suffixarray.ExtraTrailingCellsDecorator} and
+     * {@link eu.interedition.collatex.suffixarray.DensePositiveDecorator} prepare it for the builders of the package.
+     */
+    private int[] buildSuffixArray(int start, int length) {
+        if (length < 2) {
+            // some builders expect at least two symbols
+            return new int[length];
+        }
+        final int[] input = new int[length + SuffixArrays.MAX_EXTRA_TRAILING_SPACE];
+        for (int i = 0; i < length; i++) {
+            input[i] = token_class_array[start + i] + 1;
+        }
+        final int[] suffixes = suffixArrayBuilder.buildSuffixArray(input, 0, length);
+        // some builders return arrays with trailing cells as well
+        return (suffixes.length == length ? suffixes : Arrays.copyOf(suffixes, length));
+    }
+
+    /**
+     * Adds a witness to a prepared index, as if it had been passed last on construction, updating the index in place.
+     * <p>
+     * Suffixes of the new witness only compare up to the marker token following it, as do suffixes of the indexed
+     * witnesses up to theirs, so that the order of the latter does not change. The suffix array of the new witness is
+     * built on its own, and its suffixes are inserted into the existing suffix array by binary search. LCP values of
+     * suffixes remaining adjacent are kept; the others are found by the search. Blocks and their occurrence tables are
+     * then updated where the inserted suffixes touch them, rather than being derived again.
+     * <p>
+     * For <code>n</code> indexed and <code>m</code> added tokens, the indexed tokens are neither encoded nor sorted again,
+     * the searches take <code>O(m log n)</code> comparisons besides scanning common prefixes, and only the occurrences
+     * of the added witness are sorted. The index still is made of flat arrays though, which are copied, and the merged
+     * LCP array is scanned once for its intervals, so that adding a witness still takes <code>O(n)</code> time. The
+     * child table is rebuilt on the next {@link #find(List) search}.
+     * <p>
+     * Before {@link #prepare()}, the witness is merely added to the ones to be indexed.
+     */
+    public void addWitness(Iterable<Token> tokens) {
+        if (token_array != null && StreamUtil.stream(tokens).findFirst().map(Token::getWitness).filter(witnessToOrdinal::containsKey).isPresent()) {
+            throw new IllegalArgumentException("Witness already indexed");
+        }
+        witnesses.add(tokens);
+        if (token_array == null) {
+            return;
+        }
+
+        final int start = token_array.length;
+        final Token[] added = appendWitness(tokens, start);
+        final int length = added.length;
+
+        token_array = Arrays.copyOf(token_array, start + length);
+        System.arraycopy(added, 0, token_array, start, length);
+        witness_ordinal_array = Arrays.copyOf(witness_ordinal_array, start + length);
+        Arrays.fill(witness_ordinal_array, start, start + length, witnessToOrdinal.size() - 1);
+        token_class_array = Arrays.copyOf(token_class_array, start + length);
+        encodeTokens(start);
+
+        final int[] addedSuffixes = buildSuffixArray(start, length);
+        final int[] addedLCP = SuffixArrays.computeLCP(token_class_array, start, length, addedSuffixes);
+        final int[] mergedSuffixes = new int[start + length];
+        final int[] mergedLCP = new int[start + length];
+        final int[] neighbourLCP = new int[2];
+        final int[] addedPositions = new int[length];
+        int insertion = 0;
+        int merged = 0;
+        boolean previousAdded = false;
+        int followingLCP = 0;
+        for (int s = 0; s <= length; s++) {
+            // added suffixes are sorted, so that their insertion points ascend
+            final int end = (s < length ? insertionPoint(start + addedSuffixes[s], insertion, neighbourLCP) : start);
+            for (; insertion < end; insertion++, merged++) {
+                mergedSuffixes[merged] = suffix_array[insertion];
+                // the common prefix with the added suffix preceding it has been found by the latter's search
+                mergedLCP[merged] = (previousAdded ? followingLCP : LCP_array[insertion]);
+                previousAdded = false;
+            }
+            if (s < length) {
+                mergedSuffixes[merged] = start + addedSuffixes[s];
+                addedPositions[s] = merged;
+                mergedLCP[merged] = (merged == 0 ? -1 : (previousAdded ? addedLCP[s] : neighbourLCP[0]));
+                followingLCP = neighbourLCP[1];
+                merged++;
+                previousAdded = true;
+            }
+        }
+        mergedLCP[0] = -1;
+        final int[] indexedSuffixes = suffix_array;
+        suffix_array = mergedSuffixes;
+        LCP_array = mergedLCP;
+
+        this.child_table = null;
+        updateBlocks(indexedSuffixes, addedPositions);
+    }
+
+    /**
+     * Updates the blocks and their occurrence tables, after suffixes of the witness added last have been inserted into
+     * the given suffix array at the given ascending positions of the merged one.
+     * <p>
+     * Each block persists, shifted by the suffixes inserted before it and grown by the ones inserted within it, which
+     * add one to its depth. The other intervals of the merged LCP array are new blocks. As each inserted suffix adds
+     * one branch to the suffix tree at most, the indexed occurrences of a new block are a single suffix or those of the
+     * last block closed before it. Blocks stay in the order they are closed, like {@link #splitLCP_ArrayIntoIntervals()}
+     * returns them, so that both are met in a single scan of the merged LCP array. Occurrence tables are copied block by
+     * block and witness by witness, sorting added occurrences only, which follow all indexed ones.
+     */
+    private void updateBlocks(int[] indexedSuffixes, int[] addedPositions) {
+        final List<Block> indexedBlocks = blocks;
+        final int indexedCount = indexedBlocks.size();
+        final int capacity = indexedCount + addedPositions.length;
+        final List<Block> updated = new ArrayList<>(capacity);
+        // the positions of the indexed blocks among the updated ones
+        final int[] renumbered = new int[indexedCount];
+        // the indexed occurrences of each updated block: those of an indexed block, or a single token
+        final int[] sharedBlock = new int[capacity];
+        final int[] sharedToken = new int[capacity];
+        // the added suffixes within each updated block, as a range of addedPositions
+        final int[] addedFrom = new int[capacity];
+        final int[] addedTo = new int[capacity];
+        final int[] lastClosed = { -1 };
+        ChildTable.forEachInterval(LCP_array, (lcp, lb, rb) -> {
+            final int from = lowerBound(addedPositions, lb);
+            final int to = lowerBound(addedPositions, rb + 1);
+            // the indexed suffixes within the interval, as positions of the given suffix array
+            final int indexedStart = lb - from;
+            final int indexedEnd = rb - to;
+            final int b = updated.size();
+            final int next = lastClosed[0] + 1;
+            final Block indexed = (next < indexedCount ? indexedBlocks.get(next) : null);
+            if (indexed != null && indexed.start == indexedStart && indexed.end == indexedEnd && indexed.length == lcp) {
+                updated.add(new Block(this, lb, rb, lcp, indexed.getDepth() + (from < to ? 1 : 0)));
+                renumbered[next] = b;
+                sharedBlock[b] = next;
+                lastClosed[0] = next;
+            } else {
+                final Block shared = (indexedStart < indexedEnd && lastClosed[0] >= 0 ? indexedBlocks.get(lastClosed[0]) : null);
+                if (from == to || b == capacity || (indexedStart < indexedEnd && (shared == null || shared.start != indexedStart || shared.end != indexedEnd))) {
+                    throw new IllegalStateException("LCP interval " + lb + ".." + rb + " does not extend a block");
+                }
+                updated.add(new Block(this, lb, rb, lcp, (shared != null ? shared.getDepth() + 1 : (indexedStart == indexedEnd ? 2 : 1))));
+                sharedBlock[b] = (shared == null ? -1 : lastClosed[0]);
+            }
+            sharedToken[b] = (sharedBlock[b] < 0 && indexedStart == indexedEnd ? indexedSuffixes[indexedStart] : -1);
+            addedFrom[b] = from;
+            addedTo[b] = to;
+        });
+        if (lastClosed[0] + 1 != indexedCount) {
+            throw new IllegalStateException("Block " + (lastClosed[0] + 1) + " not found in the merged LCP array");
+        }
+
+        final int[] indexedOffsets = block_offsets;
+        final int[] indexedOccurrences = block_occurrence_array;
+        block_offsets = new int[updated.size() + 1];
+        for (int b = 0; b < updated.size(); b++) {
+            block_offsets[b + 1] = block_offsets[b] + updated.get(b).getFrequency();
+        }
+        block_occurrence_array = new int[block_offsets[updated.size()]];
+        // the first occurrence of each block, which is no instance of the indexed witnesses yet
+        final int[] firstUnlisted = new int[updated.size()];
+        for (int b = 0; b < updated.size(); b++) {
+            int o = block_offsets[b];
+            final int shared = sharedBlock[b];
+            if (shared >= 0) {
+                final int count = indexedOffsets[shared + 1] - indexedOffsets[shared];
+                System.arraycopy(indexedOccurrences, indexedOffsets[shared], block_occurrence_array, o, count);
+                o += count;
+            } else if (sharedToken[b] >= 0) {
+                block_occurrence_array[o++] = sharedToken[b];
+            }
+            final boolean listed = (shared >= 0 && renumbered[shared] == b);
+            firstUnlisted[b] = (listed ? o : block_offsets[b]);
+            final int addedStart = o;
+            for (int a = addedFrom[b]; a < addedTo[b]; a++) {
+                block_occurrence_array[o++] = suffix_array[addedPositions[a]];
+            }
+            Arrays.sort(block_occurrence_array, addedStart, o);
+        }
+        blocks = updated;
+
+        // instances of the indexed witnesses are renumbered, and merged with the ones in new blocks per witness
+        final int witnessCount = witnessToOrdinal.size();
+        final int[] listedOffsets = Arrays.copyOf(witness_offsets, witnessCount + 1);
+        listedOffsets[witnessCount] = listedOffsets[witnessCount - 1];
+        final int[] listedBlocks = witness_block_array;
+        final int[] listedStartTokens = witness_start_token_array;
+        final int[] unlistedOffsets = new int[witnessCount + 1];
+        for (int b = 0; b < updated.size(); b++) {
+            for (int o = firstUnlisted[b]; o < block_offsets[b + 1]; o++) {
+                unlistedOffsets[witness_ordinal_array[block_occurrence_array[o]] + 1]++;
+            }
+        }
+        for (int w = 0; w < witnessCount; w++) {
+            unlistedOffsets[w + 1] += unlistedOffsets[w];
+        }
+        final int[] unlistedBlocks = new int[unlistedOffsets[witnessCount]];
+        final int[] unlistedStartTokens = new int[unlistedOffsets[witnessCount]];
+        final int[] fill = Arrays.copyOf(unlistedOffsets, witnessCount);
+        for (int b = 0; b < updated.size(); b++) {
+            for (int o = firstUnlisted[b]; o < block_offsets[b + 1]; o++) {
+                final int i = fill[witness_ordinal_array[block_occurrence_array[o]]]++;
+                unlistedBlocks[i] = b;
+                unlistedStartTokens[i] = block_occurrence_array[o];
+            }
+        }
+        witness_offsets = new int[witnessCount + 1];
+        witness_block_array = new int[listedBlocks.length + unlistedBlocks.length];
+        witness_start_token_array = new int[witness_block_array.length];
+        int i = 0;
+        for (int w = 0; w < witnessCount; w++) {
+            witness_offsets[w] = i;
+            // listed instances are in blocks of the indexed witnesses, unlisted ones of the indexed witnesses in new blocks
+            int l = listedOffsets[w];
+            int u = unlistedOffsets[w];
+            while (l < listedOffsets[w + 1] || u < unlistedOffsets[w + 1]) {
+                if (u == unlistedOffsets[w + 1] || (l < listedOffsets[w + 1] && renumbered[listedBlocks[l]] < unlistedBlocks[u])) {
+                    witness_block_array[i] = renumbered[listedBlocks[l]];
+                    witness_start_token_array[i++] = listedStartTokens[l++];
+                } else {
+                    witness_block_array[i] = unlistedBlocks[u];
+                    witness_start_token_array[i++] = unlistedStartTokens[u++];
+                }
+            }
+        }
+        witness_offsets[witnessCount] = i;
+    }
+
+    // the number of the given ascending values, which are less than the given one
+    private static int lowerBound(int[] values, int value) {
+        final int position = Arrays.binarySearch(values, value);
+        return (position >= 0 ? position : -position - 1);
+    }
+
+    /**
+     * Searches the suffix array like Manber and Myers do, skipping the common prefix, which the given suffix shares with
+     * both suffixes bounding the search range at least.
+     *
+     * @param neighbourLCP receives the lengths of the common prefixes of the given suffix with the suffixes preceding
+     *                     and following the returned position
+     * @return the first position in the suffix array from the given one on, whose suffix sorts after the given suffix
+     */
+    private int insertionPoint(int suffix, int from, int[] neighbourLCP) {
+        int low = from;
+        int high = suffix_array.length;
+        // lower bounds of the common prefixes with the suffixes at low - 1 and high
+        int lowLCP = 0;
+        int highLCP = 0;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final int h = commonPrefixLength(suffix_array[mid], suffix, Math.min(lowLCP, highLCP));
+            if (compareSuffixes(suffix_array[mid], suffix, h) < 0) {
+                low = mid + 1;
+                lowLCP = h;
+            } else {
+                high = mid;
+                highLCP = h;
+            }
+        }
+        neighbourLCP[0] = (low == 0 ? 0 : commonPrefixLength(suffix_array[low - 1], suffix, lowLCP));
+        neighbourLCP[1] = (high == suffix_array.length ? 0 : commonPrefixLength(suffix_array[high], suffix, highLCP));
+        return low;
+    }
+
+    // compares two suffixes by the classes following their common prefix of the given length
+    private int compareSuffixes(int a, int b, int h) {
+        if (a + h == token_class_array.length) {
+            return -1;
+        }
+        if (b + h == token_class_array.length) {
+            return 1;
+        }
+        return Integer.compare(token_class_array[a + h], token_class_array[b + h]);
+    }
+
+    // extends the given common prefix length, terminating at the latest at the marker token following either suffix
+    private int commonPrefixLength(int a, int b, int h) {
+        while (a + h < token_class_array.length && b + h < token_class_array.length && token_class_array[a + h] == token_class_array[b + h]) {
+            h++;
+        }
+        return h;
+    }
+
+    /**
+     * Kasai's LCP computation allocates a rank array next to the LCP array, while the in-place variant only allocates
+     * the latter, at roughly twice the running time. The in-place variant is chosen, when both arrays of the given
+     * length would take up more than half of the heap still available.
+     */
+    static boolean isMemoryTight(int length) {
+        final Runtime runtime = Runtime.getRuntime();
+        final long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return 2L * Integer.BYTES * length > available / 2;
+    }
+
+    /**
+     * Encodes the tokens from the given position on. The last position of each witness holds its marker token, which is
+     * encoded as a separator class, so that suffix array builders only ever compare ints. Separators being unique, no
+     * common prefix of two suffixes extends over one, which keeps LCP values and thus blocks within witnesses.
+     */
+    private void encodeTokens(int from) {
+        for (int t = from; t < token_array.length; t++) {
+            final boolean separator = (t + 1 == token_array.length || witness_ordinal_array[t + 1] != witness_ordinal_array[t]);
+            token_class_array[t] = (separator ? dictionary.separator() : dictionary.classOf(token_array[t]));
+        }
+    }
+
+    private int[] prepareWitnessOrdinalArray() {
+        final int[] ordinals = new int[token_array.length];
+        witnessToOrdinal.forEach((witness, ordinal) -> Arrays.fill(ordinals, witnessToStartToken.get(witness), witnessToEndToken.get(witness) + 1, ordinal));
+        return ordinals;
     }
 
     private Token[] prepareTokenArray() {
         List<Token> tempTokenList = new ArrayList<>();
-        int counter = 0;
         witnessToStartToken = new HashMap<>();
         witnessToEndToken = new HashMap<>();
+        witnessToOrdinal = new HashMap<>();
         for (Iterable<Token> tokens : witnesses) {
-            final Witness witness = StreamUtil.stream(tokens)
-                    .findFirst()
-                    .map(Token::getWitness)
-                    .orElseThrow(() -> new IllegalArgumentException("Empty witness"));
-
-            witnessToStartToken.put(witness, counter);
-            for (Token t : tokens) {
-                tempTokenList.add(t);
-                counter++;
-            }
-            witnessToEndToken.put(witness, counter);
-            tempTokenList.add(new MarkerToken(witnessToStartToken.size()));
+            tempTokenList.addAll(Arrays.asList(appendWitness(tokens, tempTokenList.size())));
+        }
+        return tempTokenList.toArray(new Token[tempTokenList.size()]);
+    }
+
+    /**
+     * Registers the given witness as starting at the given token position.
+     *
+     * @return its tokens, followed by its marker token
+     */
+    private Token[] appendWitness(Iterable<Token> tokens, int counter) {
+        final Witness witness = StreamUtil.stream(tokens)
+                .findFirst()
+                .map(Token::getWitness)
+                .orElseThrow(() -> new IllegalArgumentException("Empty witness"));
+        List<Token> tempTokenList = new ArrayList<>();
+        witnessToOrdinal.put(witness, witnessToOrdinal.size());
+        witnessToStartToken.put(witness, counter);
+        for (Token t : tokens) {
+            tempTokenList.add(t);
             counter++;
         }
+        witnessToEndToken.put(witness, counter);
+        tempTokenList.add(new MarkerToken(witnessToStartToken.size()));
         return tempTokenList.toArray(new Token[tempTokenList.size()]);
     }
 
@@ -94,85 +469,138 @@ public class TokenIndex {
         }
     }
 
-    static class MarkerTokenComparator implements Comparator<Token> {
-        private Comparator<Token> delegate;
-
-        public MarkerTokenComparator(Comparator<Token> delegate) {
-            this.delegate = delegate;
-        }
-
-        @Override
-        public int compare(Token o1, Token o2) {
-            boolean o1isMarker = o1 instanceof MarkerToken;
-            boolean o2isMarker = o2 instanceof MarkerToken;
-            if (o1isMarker) {
-                // Both o1 and o2 could be marker tokens
-                if (o2isMarker) {
-                    MarkerToken mt1 = (MarkerToken) o1;
-                    MarkerToken mt2 = (MarkerToken) o2;
-                    // sort marker tokens from low to high
-                    return mt1.witnessIdentifier - mt2.witnessIdentifier;
+    /**
+     * Splits the LCP array into intervals, i.e. blocks, computing their depth on the way: suffixes are visited in suffix
+     * array order, marking the last visited suffix of each witness in a Fenwick tree over the suffix array, so that the
+     * number of witnesses in an interval is the number of marks within its bounds when it is closed.
+     */
+    protected List<Block> splitLCP_ArrayIntoIntervals() {
+        final List<Block> closedIntervals = new ArrayList<>();
+        final int[] lastVisited = new int[witnessToOrdinal.size()];
+        Arrays.fill(lastVisited, -1);
+        final int[] marks = new int[LCP_array.length + 1];
+        final int[] visited = { 0 };
+        // intervals are closed in ascending order of their last suffix
+        ChildTable.forEachInterval(LCP_array, (lcp, lb, rb) -> {
+            for (; visited[0] <= rb; visited[0]++) {
+                final int witness = witness_ordinal_array[suffix_array[visited[0]]];
+                if (lastVisited[witness] >= 0) {
+                    mark(marks, lastVisited[witness], -1);
                 }
-                // or one of them could be a marker token
-                // always put the marker token before the content
-                return -1;
+                mark(marks, visited[0], 1);
+                lastVisited[witness] = visited[0];
             }
-            // or one of them could be a marker token
-            // always put the content after the marker token
-            if (o2isMarker) {
-                return 1;
+            closedIntervals.add(new Block(this, lb, rb, lcp, countMarks(marks, lb, rb)));
+        });
+        return closedIntervals;
+    }
+
+    /**
+     * Searches the given phrase top-down in the child table.
+     *
+     * @return the interval of the suffix array, whose suffixes start with the given phrase, as a block
+     */
+    public Optional<Block> find(List<Token> phrase) {
+        if (phrase.isEmpty()) {
+            return Optional.empty();
+        }
+        final int[] pattern = new int[phrase.size()];
+        for (int t = 0; t < pattern.length; t++) {
+            pattern[t] = dictionary.lookup(phrase.get(t));
+            if (pattern[t] < 0) {
+                return Optional.empty();
             }
-            // Not a marker token; call delegate
-            return delegate.compare(o1, o2);
         }
+        if (child_table == null) {
+            child_table = ChildTable.of(LCP_array);
+        }
+        final long interval = child_table.find(token_class_array, 0, suffix_array, pattern);
+        return (interval < 0 ? Optional.empty() : Optional.of(new Block(this, (int) (interval >>> 32), (int) interval, pattern.length)));
     }
 
-    protected List<Block> splitLCP_ArrayIntoIntervals() {
-        List<Block> closedIntervals = new ArrayList<>();
-        int previousLCP_value = 0;
-        Stack<Block> openIntervals = new Stack<>();
-        for (int idx = 0; idx < LCP_array.length; idx++) {
-            int lcp_value = LCP_array[idx];
-            if (lcp_value > previousLCP_value) {
-                openIntervals.push(new Block(this, idx - 1, lcp_value));
-                previousLCP_value = lcp_value;
-            } else if (lcp_value < previousLCP_value) {
-                // close open intervals that are larger than current LCP value
-                while (!openIntervals.isEmpty() && openIntervals.peek().length > lcp_value) {
-                    Block a = openIntervals.pop();
-                    closedIntervals.add(new Block(this, a.start, idx - 1, a.length));
-                }
-                // then: open a new interval starting with filtered intervals
-                if (lcp_value > 0) {
-                    int start = closedIntervals.get(closedIntervals.size() - 1).start;
-                    openIntervals.push(new Block(this, start, lcp_value));
-                }
-                previousLCP_value = lcp_value;
-            }
+    private static void mark(int[] marks, int position, int delta) {
+        for (int i = position + 1; i < marks.length; i += i & -i) {
+            marks[i] += delta;
         }
-        // add all the open intervals to the result
-        for (Block interval : openIntervals) {
-            if (interval.length > 0) {
-                closedIntervals.add(new Block(this, interval.start, LCP_array.length - 1, interval.length));
-            }
+    }
+
+    private static int countMarks(int[] marks, int from, int to) {
+        int count = 0;
+        for (int i = to + 1; i > 0; i -= i & -i) {
+            count += marks[i];
         }
-        return closedIntervals;
+        for (int i = from; i > 0; i -= i & -i) {
+            count -= marks[i];
+        }
+        return count;
     }
 
-    private void constructWitnessToBlockInstancesMap() {
-        witnessToBlockInstances = new HashMap<>();
-        for (Block interval : blocks) {
-            for (Block.Instance instance : interval.getAllInstances()) {
-                Witness w = instance.getWitness();
-                List<Block.Instance> instances = witnessToBlockInstances.computeIfAbsent(w, v -> new ArrayList<>());
-                instances.add(instance);
+    private void constructOccurrenceTables() {
+        // occurrences of each block, sorted by start token
+        block_offsets = new int[blocks.size() + 1];
+        for (int b = 0; b < blocks.size(); b++) {
+            block_offsets[b + 1] = block_offsets[b] + blocks.get(b).getFrequency();
+        }
+        block_occurrence_array = new int[block_offsets[blocks.size()]];
+        for (int b = 0; b < blocks.size(); b++) {
+            final Block block = blocks.get(b);
+            System.arraycopy(suffix_array, block.start, block_occurrence_array, block_offsets[b], block.getFrequency());
+            Arrays.sort(block_occurrence_array, block_offsets[b], block_offsets[b + 1]);
+        }
+
+        // distribute them over the witnesses, which occupy ascending token ranges, keeping the order
+        final int[] witnessStarts = new int[witnessToOrdinal.size()];
+        witnessToOrdinal.forEach((witness, ordinal) -> witnessStarts[ordinal] = witnessToStartToken.get(witness));
+        final int[] occurrenceWitnesses = new int[block_occurrence_array.length];
+        witness_offsets = new int[witnessStarts.length + 1];
+        for (int o = 0; o < block_occurrence_array.length; o++) {
+            final int position = Arrays.binarySearch(witnessStarts, block_occurrence_array[o]);
+            occurrenceWitnesses[o] = (position >= 0 ? position : -position - 2);
+            witness_offsets[occurrenceWitnesses[o] + 1]++;
+        }
+        for (int w = 0; w < witnessStarts.length; w++) {
+            witness_offsets[w + 1] += witness_offsets[w];
+        }
+        witness_block_array = new int[block_occurrence_array.length];
+        witness_start_token_array = new int[block_occurrence_array.length];
+        final int[] fill = Arrays.copyOf(witness_offsets, witnessStarts.length);
+        for (int b = 0; b < blocks.size(); b++) {
+            for (int o = block_offsets[b]; o < block_offsets[b + 1]; o++) {
+                final int i = fill[occurrenceWitnesses[o]]++;
+                witness_block_array[i] = b;
+                witness_start_token_array[i] = block_occurrence_array[o];
             }
         }
     }
 
+    /**
+     * @return the position in {@link #witness_offsets} of the given witness, or <code>-1</code> if it is not indexed
+     */
+    public int getWitnessOrdinal(Witness w) {
+        return witnessToOrdinal.getOrDefault(w, -1);
+    }
+
+    /**
+     * @return the end of the occurrences of the given block in {@link #block_occurrence_array}, which start before the
+     * given token; the occurrences in the witnesses preceding the token thus are an array slice starting at
+     * <code>block_offsets[block]</code>
+     */
+    public int getOccurrencesEndBefore(int block, int token) {
+        final int position = Arrays.binarySearch(block_occurrence_array, block_offsets[block], block_offsets[block + 1], token);
+        return (position >= 0 ? position : -position - 1);
+    }
+
     //NOTE: An empty list is returned when there are no instances for the specified witness
     public List<Block.Instance> getBlockInstancesForWitness(Witness w) {
-        return witnessToBlockInstances.computeIfAbsent(w, v -> Collections.emptyList());
+        final int ordinal = getWitnessOrdinal(w);
+        if (ordinal < 0) {
+            return Collections.emptyList();
+        }
+        final List<Block.Instance> instances = new ArrayList<>(witness_offsets[ordinal + 1] - witness_offsets[ordinal]);
+        for (int i = witness_offsets[ordinal]; i < witness_offsets[ordinal + 1]; i++) {
+            instances.add(new Block.Instance(witness_start_token_array[i], blocks.get(witness_block_array[i])));
+        }
+        return instances;
     }
 
     public int size() {
@@ -0,0 +1,152 @@
+package eu.interedition.collatex.dekker.token_index;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A directory of memory-mapped files, each holding the suffix array, LCP array and blocks of a token index, so that
+ * repeated collations of the same witnesses do not have to derive them again.
+ * <p>
+ * Files are keyed by a hash of the token classes, the witness each token belongs to and the comparator's class: the
+ * classes being the witnesses' tokens as the comparator tells them apart, they determine all data derived from them.
+ * The classes are stored as well and compared on loading, so that hash collisions are detected. Failing to read or
+ * write the cache is logged; the index is then derived as usual. Files are written in big-endian byte order, so that a
+ * cache directory can be shared between machines.
+ */
+public class TokenIndexCache {
+
+    private static final Logger LOG = Logger.getLogger(TokenIndexCache.class.getName());
+
+    private static final int MAGIC = 0x43585449;
+    private static final int VERSION = 2;
+    private static final int HEADER_INTS = 4;
+
+    private final Path directory;
+
+    public TokenIndexCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sets the suffix array, LCP array and blocks of the given index, whose tokens have been encoded already, from the
+     * cache.
+     *
+     * @return whether the index has been found in the cache
+     */
+    boolean load(TokenIndex index) {
+        final Path file = file(index);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final IntBuffer ints = buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+            final int length = index.token_class_array.length;
+            if (ints.get() != MAGIC || ints.get() != VERSION || ints.get() != length) {
+                LOG.log(Level.WARNING, "{0}: not a token index of the expected version and size", file);
+                return false;
+            }
+            final int blockCount = ints.get();
+            if (!ints.slice().limit(length).equals(IntBuffer.wrap(index.token_class_array))) {
+                LOG.log(Level.WARNING, "{0}: hash collision", file);
+                return false;
+            }
+            ints.position(HEADER_INTS + length);
+
+            final int[] suffixes = new int[length];
+            final int[] lcp = new int[length];
+            ints.get(suffixes);
+            ints.get(lcp);
+            final List<Block> blocks = new ArrayList<>(blockCount);
+            for (int b = 0; b < blockCount; b++) {
+                blocks.add(new Block(index, ints.get(), ints.get(), ints.get(), ints.get()));
+            }
+
+            index.suffix_array = suffixes;
+            index.LCP_array = lcp;
+            index.blocks = blocks;
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, file + ": failed to load token index", e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores the suffix array, LCP array and blocks of the given index in the cache.
+     */
+    void store(TokenIndex index) {
+        final Path file = file(index);
+        try {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, "index", ".tmp");
+            try {
+                final int length = index.token_class_array.length;
+                final long size = Integer.BYTES * (HEADER_INTS + 3L * length + 4L * index.blocks.size());
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    final IntBuffer ints = buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+                    ints.put(MAGIC).put(VERSION).put(length).put(index.blocks.size());
+                    ints.put(index.token_class_array).put(index.suffix_array).put(index.LCP_array);
+                    for (Block block : index.blocks) {
+                        ints.put(block.start).put(block.end).put(block.length).put(block.getDepth());
+                    }
+                    buffer.force();
+                }
+                // concurrent collations of the same witnesses write identical files
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, file + ": failed to store token index", e);
+        }
+    }
+
+    private Path file(TokenIndex index) {
+        return directory.resolve(key(index) + ".index");
+    }
+
+    static String key(TokenIndex index) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(index.getComparator().getClass().getName().getBytes(StandardCharsets.UTF_8));
+            update(digest, index.token_class_array);
+            update(digest, index.witness_ordinal_array);
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, int[] values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 1024);
+        for (int offset = 0; offset < values.length; offset += 1024) {
+            buffer.clear();
+            buffer.asIntBuffer().put(values, offset, Math.min(1024, values.length - offset));
+            buffer.limit(Integer.BYTES * Math.min(1024, values.length - offset));
+            digest.update(buffer);
+        }
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, values.length));
+    }
+}
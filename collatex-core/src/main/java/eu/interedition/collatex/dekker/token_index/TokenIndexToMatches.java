@@ -9,9 +9,7 @@ import eu.interedition.collatex.dekker.island.Island;
 import eu.interedition.collatex.util.VariantGraphRanking;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Created by ronald on 4/26/15.
@@ -20,34 +18,34 @@ public class TokenIndexToMatches {
 
     public static Set<Island> createMatches(TokenIndex tokenIndex, VariantGraph.Vertex[] vertex_array, VariantGraph g, Iterable<Token> w) {
         // we need the variant graph ranking for the projection in the vector space
-        VariantGraphRanking ranking = VariantGraphRanking.of(g);
+        return createMatches(tokenIndex, vertex_array, VariantGraphRanking.of(g), w);
+    }
+
+    public static Set<Island> createMatches(TokenIndex tokenIndex, VariantGraph.Vertex[] vertex_array, VariantGraphRanking ranking, Iterable<Token> w) {
         // init result
         Set<Island> result = new HashSet<>();
         // based on the TokenIndex we build up the islands...
         // an island is a graph instance and a witness instance of the same block combined
         Witness witness = w.iterator().next().getWitness();
         int startTokenPositionForWitness = tokenIndex.getStartTokenPositionForWitness(witness);
-        List<Block.Instance> instances = tokenIndex.getBlockInstancesForWitness(witness);
+        int ordinal = tokenIndex.getWitnessOrdinal(witness);
         // we have to combine each instance in the witness with the other instances already present in the graph
-        for (Block.Instance witnessInstance : instances) {
-            // System.out.println("Debug creating matches for witness block instance: "+witnessInstance);
-            // for every instance of a block in the witness we need to fetch the corresponding graph instances of the block
-            // calculate graph block instances
-            // fetch block
-            Block block = witnessInstance.block;
-            List<Block.Instance> allInstances = block.getAllInstances();
-            List<Block.Instance> graphInstances = allInstances.stream()//
-                    .filter(instance -> instance.start_token < startTokenPositionForWitness)//
-                    .collect(Collectors.toList());
+        for (int instance = tokenIndex.witness_offsets[ordinal]; instance < tokenIndex.witness_offsets[ordinal + 1]; instance++) {
+            // for every instance of a block in the witness we need to fetch the corresponding graph instances of the block,
+            // which are the occurrences of the block starting before the witness
+            int blockId = tokenIndex.witness_block_array[instance];
+            Block block = tokenIndex.blocks.get(blockId);
+            Block.Instance witnessInstance = new Block.Instance(tokenIndex.witness_start_token_array[instance], block);
+            int graphInstancesEnd = tokenIndex.getOccurrencesEndBefore(blockId, startTokenPositionForWitness);
             // now for every graph block instance we have to create matches
             // for backwards compatibility reasons we do that with the Island and Coordinates classes
-            for (Block.Instance graphInstance : graphInstances) {
+            for (int graphInstance = tokenIndex.block_offsets[blockId]; graphInstance < graphInstancesEnd; graphInstance++) {
                 // we need to create an island for every block instance in the graph corresponding to this block instance in the witness
                 Island island = new Island(witnessInstance);
                 // for every matching token from the witness with a vertex in the graph we need to create a coordinate and
                 // 1) add it to the island and 2) set the corresponding cell in the table
                 // set the tokens and vertices on the table
-                int graph_start_token = graphInstance.start_token;
+                int graph_start_token = tokenIndex.block_occurrence_array[graphInstance];
                 for (int i = 0; i < block.length; i++) {
                     VariantGraph.Vertex v = vertex_array[graph_start_token + i];
                     if (v == null) {
@@ -23,7 +23,6 @@ import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.util.StreamUtil;
-import eu.interedition.collatex.util.VariantGraphRanking;
 import eu.interedition.collatex.util.VertexMatch;
 
 import java.util.BitSet;
@@ -48,7 +47,7 @@ public class MediteAlgorithm extends CollationAlgorithm.Base {
 
     @Override
     public void collate(VariantGraph graph, Iterable<Token> witness) {
-        final VariantGraph.Vertex[][] vertices = VariantGraphRanking.of(graph).asArray();
+        final VariantGraph.Vertex[][] vertices = ranking(graph).asArray();
         final Token[] tokens = StreamUtil.stream(witness).toArray(Token[]::new);
 
         final SuffixTree<Token> suffixTree = SuffixTree.build(comparator, tokens);
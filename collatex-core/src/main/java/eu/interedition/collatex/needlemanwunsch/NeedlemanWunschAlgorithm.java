@@ -23,7 +23,6 @@ import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.util.StreamUtil;
-import eu.interedition.collatex.util.VariantGraphRanking;
 
 import java.util.*;
 
@@ -52,7 +51,7 @@ public class NeedlemanWunschAlgorithm extends CollationAlgorithm.Base {
 
     @Override
     public void collate(VariantGraph against, Iterable<Token> witness) {
-        final VariantGraph.Vertex[][] ranks = VariantGraphRanking.of(against).asArray();
+        final VariantGraph.Vertex[][] ranks = ranking(against).asArray();
         final Token[] tokens = StreamUtil.stream(witness).toArray(Token[]::new);
 
         final Map<Token, VariantGraph.Vertex> alignments = new HashMap<>();
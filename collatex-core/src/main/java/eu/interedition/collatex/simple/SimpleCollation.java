@@ -23,17 +23,24 @@ import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.VariantGraph;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 public class SimpleCollation {
 
     private final List<SimpleWitness> witnesses;
     private final CollationAlgorithm algorithm;
     private final boolean joined;
+    private final Supplier<VariantGraph> graphFactory;
 
     public SimpleCollation(List<SimpleWitness> witnesses, CollationAlgorithm algorithm, boolean joined) {
+        this(witnesses, algorithm, joined, VariantGraph::new);
+    }
+
+    public SimpleCollation(List<SimpleWitness> witnesses, CollationAlgorithm algorithm, boolean joined, Supplier<VariantGraph> graphFactory) {
         this.witnesses = witnesses;
         this.algorithm = algorithm;
         this.joined = joined;
+        this.graphFactory = graphFactory;
     }
 
     public List<SimpleWitness> getWitnesses() {
@@ -48,6 +55,14 @@ public class SimpleCollation {
         return joined;
     }
 
+    public Supplier<VariantGraph> getGraphFactory() {
+        return graphFactory;
+    }
+
+    public VariantGraph collate() {
+        return collate(graphFactory.get());
+    }
+
     public VariantGraph collate(VariantGraph graph) {
         algorithm.collate(graph, witnesses);
         if (joined) {
@@ -19,6 +19,7 @@
 
 package eu.interedition.collatex.simple;
 
+import eu.interedition.collatex.FrozenVariantGraph;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
@@ -38,6 +39,12 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
+ * Serializes a variant graph into various formats.
+ * <p>
+ * Vertex numbers and the ranking are derived from the graph lazily, so that a serializer of a mutable graph must not be
+ * shared between threads. For a {@link VariantGraph#freeze() frozen} graph the precomputed ones are used instead;
+ * the serializer then does not keep any mutable state and can write multiple formats concurrently.
+ *
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
  */
 public class SimpleVariantGraphSerializer {
@@ -235,6 +242,9 @@ public class SimpleVariantGraphSerializer {
     }
 
     private int numericId(VariantGraph.Vertex vertex) {
+        if (graph instanceof FrozenVariantGraph) {
+            return ((FrozenVariantGraph) graph).position(vertex);
+        }
         Integer id = vertexIds.computeIfAbsent(vertex, k -> vertexIds.size());
         return id;
     }
@@ -252,6 +262,9 @@ public class SimpleVariantGraphSerializer {
     }
 
     VariantGraphRanking ranking() {
+        if (graph instanceof FrozenVariantGraph) {
+            return ((FrozenVariantGraph) graph).ranking();
+        }
         if (ranking == null) {
             ranking = VariantGraphRanking.of(graph);
         }
@@ -0,0 +1,43 @@
+package eu.interedition.collatex.suffixarray;
+
+/**
+ * A suffix array builder, which picks one of the algorithms in this package depending on the length and the alphabet
+ * size of its input.
+ * <p>
+ * The crossover points have been measured on token class sequences of collations with up to a million tokens (see
+ * <code>SuffixArrayBuilderBenchmark</code> in the test sources): {@link DivSufSort} is fastest for small alphabets,
+ * but its bucket table grows quadratically with the alphabet, so that it falls behind beyond a few hundred symbols.
+ * {@link SAIS} is linear in the input length and within a few percent of the fastest builder otherwise. Below
+ * ten thousand symbols all builders finish within a few milliseconds, so {@link SAIS} is used as well.
+ * <p>
+ * Inputs with negative symbols are mapped to a dense, non-negative alphabet first. The input is left intact; no
+ * trailing space is required.
+ */
+public final class AutoSuffixArrayBuilder implements ISuffixArrayBuilder {
+
+    /**
+     * Minimum input length, from which on the alphabet size is taken into account.
+     */
+    static final int SMALL_INPUT = 10000;
+
+    /**
+     * Maximum alphabet size, for which {@link DivSufSort} is used.
+     */
+    static final int SMALL_ALPHABET = 256;
+
+    @Override
+    public int[] buildSuffixArray(int[] input, int start, int length) {
+        if (length == 0) {
+            return new int[0];
+        }
+        final MinMax minmax = Tools.minmax(input, start, length);
+        if (minmax.min < 0) {
+            return new DensePositiveDecorator(this).buildSuffixArray(input, start, length);
+        }
+        if (length >= SMALL_INPUT && minmax.max < SMALL_ALPHABET) {
+            return new DivSufSort(SMALL_ALPHABET).buildSuffixArray(input, start, length);
+        }
+        // SAIS does not support offsets into its input
+        return (start == 0 ? new SAIS() : new ExtraTrailingCellsDecorator(new SAIS(), 0)).buildSuffixArray(input, start, length);
+    }
+}
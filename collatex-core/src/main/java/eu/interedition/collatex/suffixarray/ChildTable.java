@@ -0,0 +1,187 @@
+package eu.interedition.collatex.suffixarray;
+
+import java.util.Arrays;
+
+/**
+ * The child table of an enhanced suffix array, by which the LCP intervals of a suffix array can be traversed top-down,
+ * along with a bottom-up traversal of LCP intervals, neither of which allocates per interval.
+ * <p>
+ * An LCP interval <code>l-[i..j]</code> is a maximal range of the suffix array, whose suffixes share a prefix of
+ * length <code>l</code>; its child intervals are split at its <em>l-indices</em>, the positions <code>k</code> in
+ * <code>(i..j]</code> with <code>lcp[k] == l</code>. For each position, the table holds the first l-index of the
+ * interval ending before it (<code>up</code>) or starting at it (<code>down</code>), and the next l-index of the same
+ * interval (<code>nextLIndex</code>).
+ * <p>
+ * The algorithms come from
+ * <tt>M. I. Abouelhoda, S. Kurtz, and E. Ohlebusch. Replacing suffix trees with enhanced suffix arrays. Journal of
+ * Discrete Algorithms, 2(1):53–86, 2004.</tt>
+ */
+public final class ChildTable {
+
+    /**
+     * Receives LCP intervals.
+     */
+    @FunctionalInterface
+    public interface IntervalVisitor {
+        /**
+         * @param lcp the length of the prefix shared by the suffixes of the interval; <code>-1</code> for single suffixes
+         * @param lb  the first position of the interval in the suffix array
+         * @param rb  the last position of the interval in the suffix array
+         */
+        void visit(int lcp, int lb, int rb);
+    }
+
+    private final int[] lcp;
+    public final int[] up;
+    public final int[] down;
+    public final int[] nextLIndex;
+
+    private ChildTable(int[] lcp, int[] up, int[] down, int[] nextLIndex) {
+        this.lcp = lcp;
+        this.up = up;
+        this.down = down;
+        this.nextLIndex = nextLIndex;
+    }
+
+    /**
+     * Builds the child table of the given LCP array, as computed by {@link SuffixArrays#computeLCP(int[], int, int, int[])}.
+     */
+    public static ChildTable of(int[] lcp) {
+        final int n = lcp.length;
+        final int[] up = new int[n + 1];
+        final int[] down = new int[n + 1];
+        final int[] nextLIndex = new int[n + 1];
+        Arrays.fill(up, -1);
+        Arrays.fill(down, -1);
+        Arrays.fill(nextLIndex, -1);
+
+        final int[] stack = new int[n + 1];
+        int top = 0;
+        int lastIndex = -1;
+        stack[0] = 0;
+        for (int i = 1; i <= n; i++) {
+            final int l = lcp(lcp, i);
+            while (l < lcp(lcp, stack[top])) {
+                lastIndex = stack[top--];
+                if (l <= lcp(lcp, stack[top]) && lcp(lcp, stack[top]) != lcp(lcp, lastIndex)) {
+                    down[stack[top]] = lastIndex;
+                }
+            }
+            if (lastIndex != -1) {
+                up[i] = lastIndex;
+                lastIndex = -1;
+            }
+            stack[++top] = i;
+        }
+
+        top = 0;
+        stack[0] = 0;
+        for (int i = 1; i <= n; i++) {
+            final int l = lcp(lcp, i);
+            while (l < lcp(lcp, stack[top])) {
+                top--;
+            }
+            if (l == lcp(lcp, stack[top])) {
+                nextLIndex[stack[top--]] = i;
+            }
+            stack[++top] = i;
+        }
+        return new ChildTable(lcp, up, down, nextLIndex);
+    }
+
+    /**
+     * @return the length of the prefix shared by the suffixes of the given LCP interval
+     */
+    public int intervalLcp(int lb, int rb) {
+        return lcp[firstLIndex(lb, rb)];
+    }
+
+    /**
+     * Visits the child intervals of the given LCP interval in suffix array order.
+     */
+    public void forEachChild(int lb, int rb, IntervalVisitor visitor) {
+        int start = lb;
+        for (int index = firstLIndex(lb, rb); index != -1 && index <= rb; index = nextLIndex[index]) {
+            visitChild(start, index - 1, visitor);
+            start = index;
+        }
+        visitChild(start, rb, visitor);
+    }
+
+    private void visitChild(int lb, int rb, IntervalVisitor visitor) {
+        visitor.visit(lb == rb ? -1 : intervalLcp(lb, rb), lb, rb);
+    }
+
+    /**
+     * Searches the given pattern top-down from the root interval.
+     *
+     * @param input the input of the suffix array, starting at <code>start</code>
+     * @return the interval of the suffixes starting with the pattern, packed as <code>lb &lt;&lt; 32 | rb</code>, or
+     * <code>-1</code> if there are none
+     */
+    public long find(int[] input, int start, int[] sa, int[] pattern) {
+        final int n = lcp.length;
+        if (n == 0) {
+            return -1;
+        }
+        int lb = 0;
+        int rb = n - 1;
+        int matched = 0;
+        while (true) {
+            final int depth = (lb == rb ? pattern.length : Math.min(intervalLcp(lb, rb), pattern.length));
+            for (; matched < depth; matched++) {
+                if (sa[lb] + matched >= n || input[start + sa[lb] + matched] != pattern[matched]) {
+                    return -1;
+                }
+            }
+            if (matched == pattern.length) {
+                return ((long) lb << 32) | rb;
+            }
+            // descend into the child, whose suffixes continue with the next symbol of the pattern
+            int childLb = lb;
+            int index = firstLIndex(lb, rb);
+            while (sa[childLb] + matched >= n || input[start + sa[childLb] + matched] != pattern[matched]) {
+                if (index == -1 || index > rb) {
+                    return -1;
+                }
+                childLb = index;
+                index = nextLIndex[index];
+            }
+            rb = (index == -1 || index > rb ? rb : index - 1);
+            lb = childLb;
+        }
+    }
+
+    private int firstLIndex(int lb, int rb) {
+        final int upper = up[rb + 1];
+        return (lb < upper && upper <= rb ? upper : down[lb]);
+    }
+
+    /**
+     * Visits all LCP intervals with a shared prefix, children before their parents, in ascending order of their last
+     * positions, using two int stacks only.
+     */
+    public static void forEachInterval(int[] lcp, IntervalVisitor visitor) {
+        final int n = lcp.length;
+        final int[] lcps = new int[n + 1];
+        final int[] lbs = new int[n + 1];
+        int top = 0;
+        for (int i = 1; i <= n; i++) {
+            final int l = lcp(lcp, i);
+            int lb = i - 1;
+            while (top > 0 && l < lcps[top]) {
+                lb = lbs[top];
+                visitor.visit(lcps[top--], lb, i - 1);
+            }
+            if (l > lcps[top]) {
+                lcps[++top] = l;
+                lbs[top] = lb;
+            }
+        }
+    }
+
+    // the LCP array with -1 sentinels at both ends
+    private static int lcp(int[] lcp, int i) {
+        return (i == 0 || i == lcp.length ? -1 : lcp[i]);
+    }
+}
@@ -0,0 +1,152 @@
+package eu.interedition.collatex.suffixarray;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A suffix array builder, which sorts suffixes by prefix doubling and spreads the work of each round over the cores
+ * via {@link Arrays#parallelSort(long[])} and parallel streams, i.e. over the common fork/join pool.
+ * <p>
+ * Suffixes are ranked by the position of their group in the suffix array, groups holding the suffixes, which share a
+ * prefix of the current length. Each round doubles that length by sorting the suffixes of each unsorted group by the
+ * rank of the suffix following their prefix, packed with a tie-breaking index into a <code>long</code>; groups are
+ * sorted in parallel. Sorted groups are left alone, so that later rounds only process suffixes sharing long repeats.
+ * The running time is <code>O(n log n)</code> per round, with at most <code>log(l)</code> rounds for a longest repeat
+ * of length <code>l</code>.
+ * <p>
+ * Any int symbols are accepted; the input is left intact and no trailing space is required. Meant for inputs of
+ * millions of symbols on machines with many cores: on a single core, it takes about five times as long as the linear
+ * {@link SAIS} for a collation of a million tokens.
+ */
+public final class ParallelPrefixDoubling implements ISuffixArrayBuilder {
+
+    /**
+     * Minimum number of suffixes to process in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final boolean parallel;
+
+    /**
+     * Creates a builder, which works in parallel if the common fork/join pool does.
+     */
+    public ParallelPrefixDoubling() {
+        this(ForkJoinPool.getCommonPoolParallelism() > 1);
+    }
+
+    /**
+     * @param parallel whether to work in parallel; on a single core, splitting the work only adds overhead
+     */
+    public ParallelPrefixDoubling(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @Override
+    public int[] buildSuffixArray(int[] input, int start, int length) {
+        final int n = length;
+        final int[] sa = new int[n];
+        final int[] rank = new int[n];
+        if (n == 0) {
+            return sa;
+        }
+
+        // initial round: group suffixes by their first symbol
+        final long[] keys = new long[n];
+        range(n).forEach(i -> keys[i] = ((long) input[start + i] << 32) | i);
+        if (parallel) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        range(n).forEach(j -> sa[j] = (int) keys[j]);
+
+        final int[] groups = new int[n];
+        range(n).forEach(j -> groups[j] = (j == 0 || (keys[j] >> 32) != (keys[j - 1] >> 32) ? j : 0));
+        runningMax(groups);
+        range(n).forEach(j -> rank[sa[j]] = groups[j]);
+
+        int[] unsorted = unsorted(groups, IntStream.range(0, n).toArray());
+        for (int k = 1; unsorted.length > 0; k *= 2) {
+            unsorted = round(sa, rank, unsorted, k);
+        }
+        return sa;
+    }
+
+    /**
+     * Sorts the suffixes at the given positions of the suffix array by their prefixes of twice the given length.
+     *
+     * @param positions ascending positions in the suffix array, covering all unsorted groups
+     * @return the positions of groups, which are still unsorted
+     */
+    private int[] round(int[] sa, int[] rank, int[] positions, int k) {
+        final int n = sa.length;
+        final int m = positions.length;
+
+        final int[] suffixes = new int[m];
+        final int[] ranks = new int[m];
+        final int[] nextRanks = new int[m];
+        range(m).forEach(t -> {
+            final int suffix = sa[positions[t]];
+            suffixes[t] = suffix;
+            ranks[t] = rank[suffix];
+            nextRanks[t] = (suffix + k < n ? rank[suffix + k] + 1 : 0);
+        });
+
+        // positions ascend, so that ranks (group positions) do as well: sort each group by the following rank
+        final long[] keys = new long[m];
+        range(m).forEach(t -> keys[t] = ((long) nextRanks[t] << 32) | t);
+        final int[] bounds = IntStream.concat(range(m).filter(t -> t == 0 || ranks[t] != ranks[t - 1]), IntStream.of(m)).toArray();
+        range(bounds.length - 1).forEach(g -> {
+            if (parallel && bounds[g + 1] - bounds[g] >= PARALLEL_THRESHOLD) {
+                Arrays.parallelSort(keys, bounds[g], bounds[g + 1]);
+            } else {
+                Arrays.sort(keys, bounds[g], bounds[g + 1]);
+            }
+        });
+        final int[] order = new int[m];
+        range(m).forEach(t -> order[t] = (int) keys[t]);
+
+        // as groups occupy contiguous ranges of the suffix array, sorted suffixes fill the given positions in order
+        final int[] groups = new int[m];
+        range(m).forEach(t -> {
+            final int s = order[t];
+            sa[positions[t]] = suffixes[s];
+            final boolean head = (t == 0 || ranks[s] != ranks[order[t - 1]] || nextRanks[s] != nextRanks[order[t - 1]]);
+            groups[t] = (head ? positions[t] : 0);
+        });
+        runningMax(groups);
+        range(m).forEach(t -> rank[suffixes[order[t]]] = groups[t]);
+
+        return unsorted(groups, positions);
+    }
+
+    /**
+     * @return the positions, whose groups hold more than one suffix
+     */
+    private int[] unsorted(int[] groups, int[] positions) {
+        final int m = groups.length;
+        return range(m)
+            .filter(t -> (t > 0 && groups[t] == groups[t - 1]) || (t + 1 < m && groups[t] == groups[t + 1]))
+            .map(t -> positions[t])
+            .toArray();
+    }
+
+    /**
+     * Replaces each group position by the greatest one up to it.
+     */
+    private void runningMax(int[] groups) {
+        if (parallel) {
+            Arrays.parallelPrefix(groups, Math::max);
+            return;
+        }
+        for (int i = 1; i < groups.length; i++) {
+            groups[i] = Math.max(groups[i], groups[i - 1]);
+        }
+    }
+
+    private IntStream range(int length) {
+        final IntStream range = IntStream.range(0, length);
+        return (parallel && length >= PARALLEL_THRESHOLD ? range.parallel() : range);
+    }
+}
@@ -4,12 +4,6 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
-/*
- * TODO: ultimately, this class should be "intelligent" enough to pick the best
- * algorithm, depending on the distribution and properties of the input (alphabet size,
- * symbols distribution, etc.).
- */
-
 /**
  * <p>
  * Factory-like methods for constructing suffix arrays for various data types. Whenever
@@ -32,7 +26,7 @@ public final class SuffixArrays {
     /**
      * Maximum required trailing space in the input array (certain algorithms need it).
      */
-    final static int MAX_EXTRA_TRAILING_SPACE = DeepShallow.OVERSHOOT;
+    public final static int MAX_EXTRA_TRAILING_SPACE = DeepShallow.OVERSHOOT;
 
     /*
      *
@@ -147,11 +141,70 @@ public final class SuffixArrays {
     }
 
     /**
-     * @return Return a new instance of the default algorithm for use in other methods. At
-     * the moment {@link QSufSort} is used.
+     * Calculate the longest common prefix (LCP) array like {@link #computeLCP(int[], int, int, int[])}, but without
+     * allocating more than the returned array: instead of the inverse suffix array, the permuted LCP array is derived
+     * from the suffix array preceding each suffix (&Phi;) in place, then permuted into suffix array order in place,
+     * following the cycles of the suffix array. At peak, input, suffix array and LCP array are held; that is three
+     * instead of four arrays of the input's length.
+     * <p>
+     * The algorithm used to compute the LCP comes from
+     * <tt>J. Kärkkäinen, G. Manzini, and S. J. Puglisi. Permuted longest-common-prefix array. In Proc. 20th
+     * Symposium on Combinatorial Pattern Matching (CPM ’09), pages 181–192. Springer-Verlag LNCS n. 5577, 2009.</tt>
+     */
+    public static int[] computeLCPInPlace(int[] input, final int start, final int length, int[] sa) {
+        final int[] lcp = new int[length];
+        if (length == 0) {
+            return lcp;
+        }
+
+        // phi: the suffix preceding each suffix in the suffix array
+        lcp[sa[0]] = -1;
+        for (int i = 1; i < length; i++) {
+            lcp[sa[i]] = sa[i - 1];
+        }
+
+        // permuted LCP, replacing phi in text order, as it decreases by at most one from one suffix to the next
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            final int j = lcp[i];
+            if (j < 0) {
+                lcp[i] = h = 0;
+                continue;
+            }
+            while (i + h < length && j + h < length && input[start + i + h] == input[start + j + h]) {
+                h++;
+            }
+            lcp[i] = h;
+            if (h > 0) h--;
+        }
+
+        // permute into suffix array order: lcp[k] = plcp[sa[k]]; visited cells are marked by their complement
+        for (int k = 0; k < length; k++) {
+            if (lcp[k] < 0) {
+                continue;
+            }
+            final int first = lcp[k];
+            int j = k;
+            while (sa[j] != k) {
+                lcp[j] = ~lcp[sa[j]];
+                j = sa[j];
+            }
+            lcp[j] = ~first;
+        }
+        for (int k = 0; k < length; k++) {
+            lcp[k] = ~lcp[k];
+        }
+        lcp[0] = -1;
+
+        return lcp;
+    }
+
+    /**
+     * @return Return a new instance of the default algorithm for use in other methods,
+     * which picks an algorithm depending on the input; see {@link AutoSuffixArrayBuilder}.
      */
-    private static ISuffixArrayBuilder defaultAlgorithm() {
-        return new QSufSort();
+    public static ISuffixArrayBuilder defaultAlgorithm() {
+        return new AutoSuffixArrayBuilder();
     }
 
     /**
@@ -20,6 +20,7 @@
 package eu.interedition.collatex.util;
 
 import eu.interedition.collatex.Token;
+import eu.interedition.collatex.TranspositionIndex;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
 
@@ -44,6 +45,7 @@ public class ParallelSegmentationApparatus {
         callback.start();
 
         final Set<Witness> allWitnesses = ranking.witnesses();
+        final TranspositionIndex transpositions = ranking.getGraph().transpositionIndex();
       for (final Map.Entry<Integer, Set<VariantGraph.Vertex>> row : ranking.getByRank().entrySet()) {
         final int rank = row.getKey();
         final Collection<VariantGraph.Vertex> verticesOfRank = row.getValue();
@@ -58,8 +60,8 @@ public class ParallelSegmentationApparatus {
         final SortedMap<Integer, List<VariantGraph.Vertex>> verticesByTranspositionRank = new TreeMap<>();
         for (VariantGraph.Vertex v : verticesOfRank) {
           int transpositionRank = 0;
-          for (Set<VariantGraph.Vertex> transposition : v.transpositions()) {
-            for (VariantGraph.Vertex tv : transposition) {
+          for (int transposition : transpositions.ids(v)) {
+            for (VariantGraph.Vertex tv : transpositions.get(transposition)) {
               transpositionRank += (ranking.apply(tv) - rank);
             }
           }
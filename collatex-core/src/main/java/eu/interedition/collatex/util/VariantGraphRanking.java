@@ -19,13 +19,16 @@
 
 package eu.interedition.collatex.util;
 
+import eu.interedition.collatex.FrozenVariantGraph;
 import eu.interedition.collatex.Token;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.VariantGraph.Vertex;
 import eu.interedition.collatex.Witness;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,12 +49,17 @@ public class VariantGraphRanking implements Iterable<Set<VariantGraph.Vertex>>,
     private final Map<VariantGraph.Vertex, Integer> byVertex = new HashMap<>();
     private final SortedMap<Integer, Set<Vertex>> byRank = new TreeMap<>();
     private final VariantGraph graph;
+    private int modifications;
 
     VariantGraphRanking(VariantGraph graph) {
         this.graph = graph;
+        this.modifications = graph.modifications();
     }
 
     public static VariantGraphRanking of(VariantGraph graph) {
+        if (graph instanceof FrozenVariantGraph && ((FrozenVariantGraph) graph).ranking() != null) {
+            return ((FrozenVariantGraph) graph).ranking();
+        }
         final VariantGraphRanking ranking = new VariantGraphRanking(graph);
         for (VariantGraph.Vertex v : graph.vertices()) {
             int rank = -1;
@@ -81,6 +89,70 @@ public class VariantGraphRanking implements Iterable<Set<VariantGraph.Vertex>>,
         return ranking;
     }
 
+    /**
+     * @return whether this ranking reflects the current structure of the given graph, i.e. it has been computed for
+     *         this very graph, which has not been modified since then without {@link #connected(Vertex, Vertex)
+     *         updating} the ranking accordingly
+     */
+    public boolean isCurrentFor(VariantGraph graph) {
+        return this.graph == graph && modifications == graph.modifications();
+    }
+
+    /**
+     * Updates the ranking after an edge has been added to the graph.
+     * <p>
+     * Adding an edge can only raise ranks: if the target of the new edge is not ranked after its source yet, it is moved
+     * to the rank following the source, and the change is propagated to its successors as far as necessary. The cost
+     * of an update is thus proportional to the number of vertices, whose rank changes, instead of the size of the
+     * graph. Vertices, which have been added to the graph, are ranked once they are connected to a ranked predecessor.
+     *
+     * @param from the source of the added edge, which has to be ranked already
+     * @param to   the target of the added edge
+     * @return this ranking
+     */
+    public VariantGraphRanking connected(Vertex from, Vertex to) {
+        final Integer fromRank = byVertex.get(from);
+        if (fromRank == null) {
+            throw new IllegalArgumentException(from.toString());
+        }
+        final Deque<Vertex> raised = new ArrayDeque<>();
+        if (raise(to, fromRank + 1)) {
+            raised.push(to);
+        }
+        while (!raised.isEmpty()) {
+            final Vertex vertex = raised.pop();
+            final int successorRank = byVertex.get(vertex) + 1;
+            for (Vertex successor : vertex.outgoing().keySet()) {
+                if (raise(successor, successorRank)) {
+                    raised.push(successor);
+                }
+            }
+        }
+        modifications = graph.modifications();
+        return this;
+    }
+
+    private boolean raise(Vertex vertex, int rank) {
+        final Integer current = byVertex.get(vertex);
+        if (current != null && current >= rank) {
+            return false;
+        }
+        byVertex.put(vertex, rank);
+        if (current != null) {
+            final Set<Vertex> previous = byRank.get(current);
+            previous.remove(vertex);
+            if (previous.isEmpty()) {
+                byRank.remove(current);
+            }
+        }
+        byRank.computeIfAbsent(rank, r -> new HashSet<>()).add(vertex);
+        return true;
+    }
+
+    public VariantGraph getGraph() {
+        return graph;
+    }
+
     public Set<Witness> witnesses() {
         return graph.witnesses();
     }
@@ -21,10 +21,18 @@ package eu.interedition.collatex.util;
 
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
+import eu.interedition.collatex.WitnessSet;
 
 import java.util.*;
 
 /**
+ * Traverses a variant graph in topological order, optionally restricted to the edges of a given set of witnesses.
+ * <p>
+ * The traversal keeps its state in arrays indexed by {@link VariantGraph.Vertex#id() vertex identifiers}: the number
+ * of incoming edges of a vertex is determined once, when it is first encountered, and witness filtering is done on
+ * the bit sets of the graph's edge labels. A {@link Cursor} can be {@link Cursor#reset() reset} and reused for
+ * subsequent traversals of the same graph, so that repeated traversals do not allocate.
+ *
  * @author <a href="http://gregor.middell.net/">Gregor Middell</a>
  */
 public class VariantGraphTraversal implements Iterable<VariantGraph.Vertex> {
@@ -46,42 +54,132 @@ public class VariantGraphTraversal implements Iterable<VariantGraph.Vertex> {
 
   @Override
   public Iterator<VariantGraph.Vertex> iterator() {
-    return new Iterator<VariantGraph.Vertex>() {
+    return cursor();
+  }
+
+  /**
+   * @return a new cursor positioned at the start of the graph
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Iterator over the vertices of a traversal, which can be reset to the start vertex and reused.
+   * <p>
+   * Vertices are yielded in the same order as they have always been: breadth-first from the start vertex, each vertex
+   * after all of its (relevant) predecessors.
+   */
+  public class Cursor implements Iterator<VariantGraph.Vertex> {
+
+    private long[] filter;
+    private int[] epochs = new int[0];
+    private int[] remaining = new int[0];
+    private VariantGraph.Vertex[] queue = new VariantGraph.Vertex[0];
+    private int epoch;
+    private int head;
+    private int tail;
 
-      private final Map<VariantGraph.Vertex, Long> encountered = new HashMap<>();
-      private final Queue<VariantGraph.Vertex> queue = new ArrayDeque<>();
-      private Optional<VariantGraph.Vertex> next = Optional.of(graph.getStart());
+    private Cursor() {
+      reset();
+    }
 
-      @Override
-      public boolean hasNext() {
-        return next.isPresent();
+    /**
+     * Repositions this cursor at the start of the graph, taking vertices into account which have been added since the
+     * last traversal.
+     *
+     * @return this cursor
+     */
+    public Cursor reset() {
+      final int vertices = graph.vertexIds();
+      if (epochs.length < vertices) {
+        final int capacity = Math.max(vertices, epochs.length * 2);
+        epochs = new int[capacity];
+        remaining = new int[capacity];
+        queue = new VariantGraph.Vertex[capacity];
+        epoch = 0;
+      } else {
+        Arrays.fill(queue, 0, tail, null);
       }
+      if (++epoch == 0) {
+        Arrays.fill(epochs, 0);
+        epoch = 1;
+      }
+      filter = (witnesses == null ? null : graph.witnessOrdinals().mask(witnesses));
+      head = 0;
+      tail = 0;
+      queue[tail++] = graph.getStart();
+      return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return head < tail;
+    }
 
-      @Override
-      public VariantGraph.Vertex next() {
-        final VariantGraph.Vertex next = this.next.get();
-        for (Map.Entry<VariantGraph.Vertex, Set<Witness>> edge : next.outgoing().entrySet()) {
-          if (witnesses != null && edge.getValue().stream().noneMatch(witnesses::contains)) {
-            continue;
-          }
-          final VariantGraph.Vertex end = edge.getKey();
-
-          final long endEncountered = Optional.ofNullable(encountered.get(end)).orElse(0L);
-          final long endIncoming = end.incoming().entrySet().stream()//
-              .filter(e -> witnesses == null || e.getValue().stream().anyMatch(witnesses::contains))//
-              .count();
-
-          if (endIncoming == endEncountered) {
-            throw new IllegalStateException(String.format("Encountered cycle traversing %s to %s", edge, end));
-          } else if ((endIncoming - endEncountered) == 1) {
-            queue.add(end);
-          }
-
-          encountered.put(end, endEncountered + 1);
+    @Override
+    public VariantGraph.Vertex next() {
+      if (head == tail) {
+        throw new NoSuchElementException();
+      }
+      final VariantGraph.Vertex next = queue[head++];
+      for (Map.Entry<VariantGraph.Vertex, Set<Witness>> edge : next.outgoing().entrySet()) {
+        if (!relevant(edge.getValue())) {
+          continue;
         }
-        this.next = Optional.ofNullable(queue.poll());
-        return next;
+        final VariantGraph.Vertex end = edge.getKey();
+        final int id = end.id();
+        if (id >= epochs.length) {
+          grow(id + 1);
+        }
+        if (epochs[id] != epoch) {
+          epochs[id] = epoch;
+          remaining[id] = incoming(end);
+        }
+
+        if (remaining[id] == 0) {
+          throw new IllegalStateException(String.format("Encountered cycle traversing %s to %s", edge, end));
+        } else if (--remaining[id] == 0) {
+          queue[tail++] = end;
+        }
+      }
+      return next;
+    }
+
+    private int incoming(VariantGraph.Vertex vertex) {
+      final Map<VariantGraph.Vertex, Set<Witness>> incoming = vertex.incoming();
+      if (filter == null) {
+        return incoming.size();
       }
-    };
+      int count = 0;
+      for (Set<Witness> label : incoming.values()) {
+        if (relevant(label)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    private boolean relevant(Set<Witness> label) {
+      if (filter == null) {
+        return true;
+      }
+      if (label instanceof WitnessSet && ((WitnessSet) label).ordinals() == graph.witnessOrdinals()) {
+        return ((WitnessSet) label).intersects(filter);
+      }
+      for (Witness witness : label) {
+        if (witnesses.contains(witness)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void grow(int vertices) {
+      final int capacity = Math.max(vertices, epochs.length * 2);
+      epochs = Arrays.copyOf(epochs, capacity);
+      remaining = Arrays.copyOf(remaining, capacity);
+      queue = Arrays.copyOf(queue, capacity);
+    }
   }
 }
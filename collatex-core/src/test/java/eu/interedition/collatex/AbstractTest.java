@@ -64,8 +64,12 @@ public abstract class AbstractTest {
         return witnesses;
     }
 
+    protected VariantGraph createGraph() {
+        return new VariantGraph();
+    }
+
     protected VariantGraph collate(SimpleWitness... witnesses) {
-        final VariantGraph graph = new VariantGraph();
+        final VariantGraph graph = createGraph();
         collate(graph, witnesses);
         return graph;
     }
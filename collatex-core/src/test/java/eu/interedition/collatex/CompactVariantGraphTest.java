@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the variant graph tests against the compact, array-based graph implementation.
+ */
+public class CompactVariantGraphTest extends VariantGraphTest {
+
+    @Override
+    protected VariantGraph createGraph() {
+        return new CompactVariantGraph();
+    }
+
+    @Test
+    public void sameAlignmentAsDefaultGraph() {
+        final SimpleWitness[] w = createWitnesses(
+            "The black dog chases a red cat.",
+            "A red cat chases the black dog.",
+            "A red cat chases the yellow dog",
+            "The dog chases a cat, the red one."
+        );
+        final VariantGraph defaultGraph = new VariantGraph();
+        collate(defaultGraph, w);
+        final VariantGraph compactGraph = collate(w);
+
+        assertEquals(toString(table(defaultGraph)), toString(table(compactGraph)));
+        assertEquals(defaultGraph.witnesses(), compactGraph.witnesses());
+    }
+
+    @Test
+    public void manyWitnesses() {
+        final String[] contents = new String[SIGLA.length];
+        for (int wc = 0; wc < contents.length; wc++) {
+            contents[wc] = (wc % 2 == 0 ? "a b c d" : "a c b d");
+        }
+        final VariantGraph graph = collate(contents);
+        assertEquals(SIGLA.length, graph.witnesses().size());
+        assertEquals(graph.witnesses(), graph.getEnd().witnesses());
+    }
+}
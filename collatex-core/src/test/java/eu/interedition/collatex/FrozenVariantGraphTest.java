@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+import eu.interedition.collatex.dekker.DekkerAlgorithm;
+import eu.interedition.collatex.simple.SimpleVariantGraphSerializer;
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Test;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FrozenVariantGraphTest extends AbstractTest {
+
+    private VariantGraph collateWithTranspositions() {
+        ((DekkerAlgorithm) collationAlgorithm).setMergeTranspositions(true);
+        final SimpleWitness[] w = createWitnesses("the nice black and white cat", "the friendly white and black cat", "the black cat");
+        return VariantGraph.JOIN.apply(collate(w));
+    }
+
+    @Test
+    public void serializesLikeSource() throws XMLStreamException {
+        final VariantGraph graph = collateWithTranspositions();
+        final FrozenVariantGraph frozen = graph.freeze();
+
+        // transposition edges are written in no particular order
+        assertEquals(lines(dot(graph)), lines(dot(frozen)));
+        assertEquals(tei(graph), tei(frozen));
+        assertEquals(table(graph), table(frozen));
+        assertEquals(graph.transpositions().size(), frozen.transpositions().size());
+        assertSame(frozen, frozen.freeze());
+
+        final VariantGraph untransposed = collate("the black cat", "the white and black cat");
+        assertEquals(graphML(untransposed), graphML(untransposed.freeze()));
+    }
+
+    @Test
+    public void concurrentSerialization() throws Exception {
+        final FrozenVariantGraph frozen = collateWithTranspositions().freeze();
+        final SimpleVariantGraphSerializer serializer = new SimpleVariantGraphSerializer(frozen);
+        final String expected = dot(frozen);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = IntStream.range(0, 16)
+                    .mapToObj(i -> executor.submit(() -> {
+                        final StringWriter writer = new StringWriter();
+                        serializer.toDot(writer);
+                        return writer.toString();
+                    }))
+                    .collect(Collectors.toList());
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnly() {
+        final FrozenVariantGraph frozen = collate("a b c").freeze();
+        frozen.connect(frozen.getStart(), frozen.getEnd(), Collections.emptySet());
+    }
+
+    private static String dot(VariantGraph graph) {
+        final StringWriter writer = new StringWriter();
+        new SimpleVariantGraphSerializer(graph).toDot(writer);
+        return writer.toString();
+    }
+
+    private static List<String> lines(String string) {
+        return Arrays.stream(string.split("\n")).sorted().collect(Collectors.toList());
+    }
+
+    private static String graphML(VariantGraph graph) throws XMLStreamException {
+        final StringWriter writer = new StringWriter();
+        final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+        new SimpleVariantGraphSerializer(graph).toGraphML(xml);
+        xml.close();
+        return writer.toString();
+    }
+
+    private static String tei(VariantGraph graph) throws XMLStreamException {
+        final StringWriter writer = new StringWriter();
+        final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+        new SimpleVariantGraphSerializer(graph).toTEI(xml);
+        xml.close();
+        return writer.toString();
+    }
+}
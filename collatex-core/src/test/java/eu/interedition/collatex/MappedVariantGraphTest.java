@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.dekker.DekkerAlgorithm;
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Runs the variant graph tests against the memory-mapped graph implementation.
+ */
+public class MappedVariantGraphTest extends VariantGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected VariantGraph createGraph() {
+        try {
+            return new MappedVariantGraph(folder.newFolder().toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void sameAlignmentAsDefaultGraph() {
+        final SimpleWitness[] w = createWitnesses(
+            "The black dog chases a red cat.",
+            "A red cat chases the black dog.",
+            "A red cat chases the yellow dog",
+            "The dog chases a cat, the red one."
+        );
+        final VariantGraph defaultGraph = new VariantGraph();
+        collate(defaultGraph, w);
+        final VariantGraph mappedGraph = collate(w);
+
+        assertEquals(toString(table(defaultGraph)), toString(table(mappedGraph)));
+        assertEquals(defaultGraph.witnesses(), mappedGraph.witnesses());
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        ((DekkerAlgorithm) collationAlgorithm).setMergeTranspositions(true);
+        final SimpleWitness[] w = createWitnesses(
+            "the black cat and the white dog",
+            "the white dog and the black cat",
+            "the black dog and the white cat"
+        );
+        final Path directory = folder.newFolder().toPath();
+        final MappedVariantGraph graph = new MappedVariantGraph(directory);
+        collate(graph, w);
+        final String table = toString(table(graph));
+        final int transpositions = graph.transpositions().size();
+        graph.close();
+
+        try (MappedVariantGraph reopened = MappedVariantGraph.open(directory, Arrays.asList(w))) {
+            assertEquals(table, toString(table(reopened)));
+            assertEquals(transpositions, reopened.transpositions().size());
+            assertEquals(graph.vertexIds(), reopened.vertexIds());
+            assertEquals(graph.edges(), reopened.edges());
+        }
+    }
+
+    @Test
+    public void reopenWithWitnessWithoutTokens() throws IOException {
+        final SimpleWitness[] w = createWitnesses("the black cat", "the white cat");
+        final SimpleWitness empty = new SimpleWitness("C");
+        final Path directory = folder.newFolder().toPath();
+        final MappedVariantGraph graph = new MappedVariantGraph(directory);
+        collate(graph, w);
+        graph.connect(graph.getStart(), graph.getEnd(), Collections.singleton(empty));
+        final String table = toString(table(graph));
+        final int witnesses = graph.witnesses().size();
+        graph.close();
+
+        try (MappedVariantGraph reopened = MappedVariantGraph.open(directory, Arrays.asList(w[0], w[1], empty))) {
+            assertEquals(table, toString(table(reopened)));
+            assertEquals(witnesses, reopened.witnesses().size());
+        }
+    }
+
+    @Test
+    public void delete() throws IOException {
+        final Path directory = folder.newFolder().toPath();
+        final MappedVariantGraph graph = new MappedVariantGraph(directory);
+        collate(graph, createWitnesses("the black cat", "the white cat"));
+        graph.delete();
+        assertFalse(Files.exists(directory));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+import eu.interedition.collatex.simple.SimpleToken;
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TranspositionIndexTest {
+
+    private final SimpleWitness witness = new SimpleWitness("A");
+    private final VariantGraph graph = new VariantGraph();
+    private final VariantGraph.Vertex a = vertex("a");
+    private final VariantGraph.Vertex b = vertex("b");
+    private final VariantGraph.Vertex c = vertex("c");
+
+    @Test
+    public void registration() {
+        final Set<VariantGraph.Vertex> ab = graph.transpose(vertices(a, b));
+        assertSame(ab, graph.transpose(vertices(b, a)));
+        assertEquals(vertices(a, b), ab);
+        assertEquals(1, graph.transpositions().size());
+
+        graph.transpose(vertices(b, c));
+        assertEquals(2, graph.transpositions().size());
+        assertEquals(2, b.transpositions().size());
+        assertTrue(b.transpositions().contains(ab));
+        assertFalse(c.transpositions().contains(ab));
+    }
+
+    @Test
+    public void sameTranspositions() {
+        final TranspositionIndex index = graph.transpositionIndex();
+        assertTrue(index.sameTranspositions(a, b));
+
+        graph.transpose(vertices(a, b));
+        assertTrue(index.sameTranspositions(a, b));
+        assertFalse(index.sameTranspositions(a, c));
+        assertTrue(index.isTransposed(a));
+        assertFalse(index.isTransposed(c));
+    }
+
+    @Test
+    public void replacement() {
+        graph.transpose(vertices(a, b, c));
+        graph.transpose(vertices(a, c));
+
+        // replacing b by a turns {a, b, c} into {a, c}, which is registered already
+        graph.transpositionIndex().replace(b, a);
+        assertEquals(1, graph.transpositions().size());
+        assertEquals(vertices(a, c), graph.transpositions().iterator().next());
+        assertTrue(b.transpositions().isEmpty());
+        assertEquals(1, a.transpositions().size());
+    }
+
+    private VariantGraph.Vertex vertex(String content) {
+        return graph.add(new SimpleToken(witness, content, content));
+    }
+
+    private static Set<VariantGraph.Vertex> vertices(VariantGraph.Vertex... vertices) {
+        return new HashSet<>(Arrays.asList(vertices));
+    }
+}
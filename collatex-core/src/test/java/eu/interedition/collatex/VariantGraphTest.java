@@ -19,6 +19,7 @@
 
 package eu.interedition.collatex;
 
+import eu.interedition.collatex.dekker.DekkerAlgorithm;
 import eu.interedition.collatex.simple.SimpleVariantGraphSerializer;
 import eu.interedition.collatex.simple.SimpleWitness;
 import eu.interedition.collatex.util.StreamUtil;
@@ -27,8 +28,11 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -90,6 +94,23 @@ public class VariantGraphTest extends AbstractTest {
         assertEquals(graph.getEnd(), path.get(7));
     }
 
+    @Test
+    public void reusableTraversalCursor() {
+        final SimpleWitness[] w = createWitnesses("a b c d e f ", "x y z d e", "a b x y z");
+        final VariantGraph graph = collate(w);
+        final VariantGraphTraversal.Cursor cursor = VariantGraphTraversal.of(graph, Collections.singleton(w[1])).cursor();
+
+        final List<VariantGraph.Vertex> path = new ArrayList<>();
+        cursor.forEachRemaining(path::add);
+        assertEquals(7, path.size());
+        assertVertexEquals("x", path.get(1));
+        assertVertexEquals("e", path.get(5));
+
+        final List<VariantGraph.Vertex> again = new ArrayList<>();
+        cursor.reset().forEachRemaining(again::add);
+        assertEquals(path, again);
+    }
+
     @Test
     public void transpositions1() {
         final VariantGraph graph = collate("the nice black and white cat", "the friendly white and black cat");
@@ -197,4 +218,65 @@ public class VariantGraphTest extends AbstractTest {
         assertHasWitnesses(edgeBetween(zin2BVertex, nuendanVertex), w[1]);
         //    assertHasWitnesses(edgeBetween(nuendanVertex, voorVertex2), w[1]);
     }
+
+    @Test
+    public void joinLikeLegacyJoin() {
+        ((DekkerAlgorithm) collationAlgorithm).setMergeTranspositions(true);
+        final SimpleWitness[] w = createWitnesses("voor Zo nu en dan zin2 na voor", "voor zin2 Nu en dan voor", "the black cat", "voor zin2 en dan nu");
+        final VariantGraph joined = VariantGraph.JOIN.apply(collate(w));
+        final VariantGraph legacyJoined = VariantGraph.LEGACY_JOIN.apply(collate(w));
+
+        assertEquals(StreamUtil.stream(legacyJoined.vertices()).count(), StreamUtil.stream(joined.vertices()).count());
+        assertEquals(table(legacyJoined), table(joined));
+        assertEquals(2, joined.transpositions().size());
+        assertEquals(transposedTokens(legacyJoined), transposedTokens(joined));
+    }
+
+    @Test
+    public void statisticsCounters() {
+        ((DekkerAlgorithm) collationAlgorithm).setMergeTranspositions(true);
+        final SimpleWitness[] w = createWitnesses("voor Zo nu en dan zin2 na voor", "voor zin2 Nu en dan voor", "the black cat", "voor zin2 en dan nu");
+        final VariantGraph graph = createGraph();
+        assertStatistics(VariantGraphStatistics.of(graph), graph.statistics());
+
+        collate(graph, w);
+        assertStatistics(VariantGraphStatistics.of(graph), graph.statistics());
+
+        VariantGraph.JOIN.apply(graph);
+        final VariantGraphStatistics statistics = VariantGraphStatistics.of(graph);
+        assertStatistics(statistics, graph.statistics());
+        assertEquals(2, statistics.getTranspositions());
+        assertEquals(4, statistics.getWitnesses());
+        assertEquals(-1, graph.statistics().getMaxRank());
+
+        final VariantGraphStatistics frozen = graph.freeze().statistics();
+        assertStatistics(statistics, frozen);
+        assertEquals(statistics.getMaxRank(), frozen.getMaxRank());
+    }
+
+    @Test
+    public void vertexTokensAreASet() {
+        final SimpleWitness[] w = createWitnesses("a b");
+        final VariantGraph graph = createGraph();
+        final List<Token> tokens = new ArrayList<>(w[0].getTokens());
+        final VariantGraph.Vertex vertex = graph.add(tokens.get(0));
+        vertex.add(tokens);
+        vertex.add(tokens);
+        assertEquals(2, vertex.tokens().size());
+        assertEquals(2, graph.statistics().getTokens());
+    }
+
+    private static void assertStatistics(VariantGraphStatistics expected, VariantGraphStatistics actual) {
+        assertEquals(expected.getVertices(), actual.getVertices());
+        assertEquals(expected.getEdges(), actual.getEdges());
+        assertEquals(expected.getTokens(), actual.getTokens());
+        assertEquals(expected.getTranspositions(), actual.getTranspositions());
+        assertEquals(expected.getMeanWitnessesPerEdge(), actual.getMeanWitnessesPerEdge(), 1e-9);
+    }
+
+    private static Set<Set<Set<Token>>> transposedTokens(VariantGraph graph) {
+        return graph.transpositions().stream()//
+                .map(t -> t.stream().map(v -> (Set<Token>) new HashSet<>(v.tokens())).collect(Collectors.toSet()))//
+                .collect(Collectors.toSet());
+    }
 }
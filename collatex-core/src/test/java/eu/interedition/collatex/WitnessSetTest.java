@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex;
+
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WitnessSetTest {
+
+    private final SimpleWitness a = new SimpleWitness("A");
+    private final SimpleWitness b = new SimpleWitness("B");
+    private final SimpleWitness c = new SimpleWitness("C");
+
+    @Test
+    public void interning() {
+        final WitnessSet.Ordinals ordinals = new WitnessSet.Ordinals();
+        final WitnessSet ab = ordinals.of(Arrays.asList(a, b));
+
+        assertSame(ab, ordinals.of(Arrays.asList(b, a)));
+        assertSame(ab, ordinals.union(ordinals.of(Arrays.asList(a)), ordinals.of(Arrays.asList(b))));
+        assertSame(ordinals.empty(), ordinals.of(new HashSet<>()));
+        assertEquals(4, ordinals.sets());
+    }
+
+    @Test
+    public void setSemantics() {
+        final WitnessSet.Ordinals ordinals = new WitnessSet.Ordinals();
+        final WitnessSet ac = ordinals.of(Arrays.asList(a, c));
+        final Set<Witness> expected = new HashSet<>(Arrays.asList(a, c));
+
+        assertEquals(expected, ac);
+        assertEquals(ac, expected);
+        assertEquals(expected.hashCode(), ac.hashCode());
+        assertTrue(ac.contains(c));
+        assertFalse(ac.contains(b));
+        assertTrue(ac.intersects(ordinals.of(Arrays.asList(b, c))));
+        assertFalse(ac.intersects(ordinals.of(Arrays.asList(b))));
+    }
+
+    @Test
+    public void moreThan64Witnesses() {
+        final WitnessSet.Ordinals ordinals = new WitnessSet.Ordinals();
+        final Set<Witness> witnesses = new HashSet<>();
+        for (int wc = 0; wc < 150; wc++) {
+            witnesses.add(new SimpleWitness("w" + wc));
+        }
+        final WitnessSet set = ordinals.of(witnesses);
+
+        assertEquals(150, set.size());
+        assertEquals(witnesses, set);
+        assertSame(set, ordinals.of(new HashSet<>(witnesses)));
+        assertEquals(149, set.nextOrdinal(149));
+        assertEquals(-1, set.nextOrdinal(150));
+    }
+
+    @Test
+    public void unionsOfCollectionsAreReadOnly() {
+        final WitnessSet.Ordinals ordinals = new WitnessSet.Ordinals();
+        final WitnessSet ab = ordinals.of(Arrays.asList(a, b));
+        final WitnessSet c = ordinals.of(Arrays.asList(this.c));
+        final WitnessSet onlyA = ordinals.of(Arrays.asList(a));
+        final WitnessSet onlyB = ordinals.of(Arrays.asList(b));
+        final int sets = ordinals.sets();
+
+        assertSame(ab, ordinals.union(Arrays.asList(onlyA, onlyB)));
+        final WitnessSet abc = ordinals.union(Arrays.asList(ab, c));
+        assertEquals(sets, ordinals.sets());
+        assertEquals(-1, abc.id());
+        assertEquals(new HashSet<>(Arrays.asList(a, b, this.c)), abc);
+
+        // interned when used as a label
+        final WitnessSet interned = ordinals.of(abc);
+        assertTrue(interned.id() >= 0);
+        assertEquals(interned, abc);
+        assertEquals(abc, interned);
+        assertSame(interned, ordinals.union(abc, ab));
+    }
+}
@@ -202,4 +202,15 @@ public class DekkerAlgorithmTest extends AbstractTest {
         assertThat(graph, graph(w[2]).aligned("those to which the parent-species had been exposed under nature . there is also , i think , some probability"));
         assertThat(graph, graph(w[3]).aligned("those to which the parent-species had been exposed under nature . there is , ").aligned(4, "also").aligned(", some probability"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProgressiveAlignment() {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the white dog and the black cat", "the black cat and the dog");
+        DekkerAlgorithm aligner = new DekkerAlgorithm();
+        VariantGraph graph = new VariantGraph();
+        aligner.collate(graph, w[0], w[1]);
+        aligner.collate(graph, w[2]);
+        assertThat(graph, graph(w[2]).aligned("the black cat and the dog"));
+        assertEquals(toString(table(collate(w))), toString(table(graph)));
+    }
+}
@@ -21,11 +21,16 @@ package eu.interedition.collatex.dekker;
 
 import eu.interedition.collatex.AbstractTest;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.simple.SimpleToken;
+import eu.interedition.collatex.simple.SimpleWitness;
 import eu.interedition.collatex.util.StreamUtil;
 import eu.interedition.collatex.util.VariantGraphRanking;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -72,4 +77,30 @@ public class VariantGraphRankerTest extends AbstractTest {
         assertVertexEquals("so", vertices.get(6));
         assertEquals(6, (long) ranking.apply(vertices.get(6)));
     }
+
+    @Test
+    public void incrementalRanking() {
+        final VariantGraph graph = collate("The black cat", "The black and white cat");
+        final VariantGraphRanking ranking = VariantGraphRanking.of(graph);
+        final List<VariantGraph.Vertex> vertices = StreamUtil.stream(graph.vertices()).collect(Collectors.toList());
+        assertTrue(ranking.isCurrentFor(graph));
+
+        // insert a vertex between "the" and "black", which raises the ranks of all following vertices
+        final SimpleWitness witness = new SimpleWitness("C");
+        final VariantGraph.Vertex the = vertices.get(1);
+        final VariantGraph.Vertex black = vertices.get(2);
+        final VariantGraph.Vertex big = graph.add(new SimpleToken(witness, "big", "big"));
+        graph.connect(the, big, Collections.singleton(witness));
+        assertFalse(ranking.isCurrentFor(graph));
+
+        ranking.connected(the, big);
+        graph.connect(big, black, Collections.singleton(witness));
+        ranking.connected(big, black);
+        assertTrue(ranking.isCurrentFor(graph));
+
+        final VariantGraphRanking expected = VariantGraphRanking.of(graph);
+        assertEquals(expected.getByVertex(), ranking.getByVertex());
+        assertEquals(expected.getByRank(), ranking.getByRank());
+        assertEquals(3, (long) ranking.apply(black));
+    }
 }
@@ -285,6 +285,168 @@ public class EditGraphMultiWitnessAlignerTest extends AbstractTest {
     assertThat(g, graph(w[1]).aligned("a g c t"));
   }
 
+  @Test
+  public void testProgressiveAlignment() {
+    final SimpleWitness[] w = createWitnesses(
+        "aaaa bbbb cccc dddd eeee ffff",
+        "aaaa bbbb eeex ffff",
+        "aaaa bbbb cccc eeee ffff"
+    );
+    VariantGraph g = new VariantGraph();
+    EditGraphAligner aligner = new EditGraphAligner();
+    aligner.collate(g, w[0], w[1]);
+    aligner.collate(g, w[2]);
+    assertThat(g, graph(w[0]).aligned("aaaa bbbb cccc").non_aligned("dddd").aligned("eeee ffff"));
+    assertThat(g, graph(w[1]).aligned("aaaa bbbb").non_aligned("eeex").aligned("ffff"));
+    assertThat(g, graph(w[2]).aligned("aaaa bbbb cccc eeee ffff"));
+  }
+
+  @Test
+  public void testLinearSpaceAlignment() {
+    final SimpleWitness[] w = createWitnesses(
+        "the black cat and the black dog sat on the mat near the door",
+        "the cat and the dog sat on the black mat by the door",
+        "a black cat and a dog on a mat near a door",
+        "the dog sat near the door and the black cat sat on the mat"
+    );
+    VariantGraph g = new VariantGraph();
+    align(g, w);
+
+    VariantGraph linear = new VariantGraph();
+    EditGraphAligner aligner = new EditGraphAligner();
+    aligner.setLinearSpace(true);
+    aligner.collate(linear, w);
+    List<SortedMap<Witness, Set<Token>>> expected = table(g);
+    List<SortedMap<Witness, Set<Token>>> actual = table(linear);
+    for (SimpleWitness sw : w) {
+      assertThat(toString(actual, sw), is(toString(expected, sw)));
+    }
+  }
+
+  @Test
+  public void testBandedAlignment() {
+    // close variants with a repeated phrase and a gap
+    final StringBuilder first = new StringBuilder();
+    final StringBuilder second = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      first.append("w").append(i).append(i % 50 == 0 ? " the cat " : " ");
+      if (i < 100 || i >= 160) {
+        second.append(i % 7 == 0 ? "v" : "w").append(i).append(i % 50 == 0 ? " the cat " : " ");
+      }
+    }
+    assertBandedAlignment(createWitnesses(first.toString(), second.toString(), first.toString()));
+
+    // without anchors and with a long omission, beyond the initial band
+    final StringBuilder omission = new StringBuilder();
+    final StringBuilder repetition = new StringBuilder();
+    for (int i = 0; i < 80; i++) {
+      omission.append("x").append(i).append(' ');
+      repetition.append("a ");
+    }
+    assertBandedAlignment(createWitnesses(omission.toString() + repetition, repetition.toString()));
+  }
+
+  @Test
+  public void testBandedAlignmentScores() {
+    // few anchors and long insertions or omissions, leading the best path away from the initial band
+    final Random random = new Random(42);
+    for (int probe = 0; probe < 300; probe++) {
+      final List<String> first = new ArrayList<>();
+      for (int i = 0, length = 40 + random.nextInt(160); i < length; i++) {
+        first.add("w" + random.nextInt(6));
+      }
+      final List<String> second = new ArrayList<>(first);
+      for (int edit = 0, edits = random.nextInt(4); edit < edits; edit++) {
+        final int position = random.nextInt(second.size());
+        final int length = 1 + random.nextInt(60);
+        if (random.nextBoolean()) {
+          second.subList(position, Math.min(second.size(), position + length)).clear();
+        } else {
+          for (int i = 0; i < length; i++) {
+            second.add(position, "w" + random.nextInt(8));
+          }
+        }
+      }
+      if (second.isEmpty()) {
+        continue;
+      }
+      final SimpleWitness[] w = createWitnesses(String.join(" ", first), String.join(" ", second));
+
+      final PathScoringAligner full = new PathScoringAligner();
+      full.collate(new VariantGraph(), w);
+      final PathScoringAligner banded = new PathScoringAligner();
+      banded.setBanded(true);
+      banded.collate(new VariantGraph(), w);
+      assertThat("probe " + probe, banded.pathScore, is(full.pathScore));
+    }
+  }
+
+  // records the score of the path found for the witness aligned last
+  private static class PathScoringAligner extends EditGraphAligner {
+    int pathScore;
+
+    @Override
+    Iterator<Score> findPath(List<Integer> variantGraphRanks, List<Token> witnessTokens, List<Integer> tokensAsIndexList, MatchCube cube) {
+      final List<Score> path = new ArrayList<>();
+      super.findPath(variantGraphRanks, witnessTokens, tokensAsIndexList, cube).forEachRemaining(path::add);
+      // matches gain a point, any other step costs one, as in the edit graph table
+      pathScore = 0;
+      for (Score score : path) {
+        pathScore += (score.type == Score.Type.match ? 1 : -1);
+      }
+      return path.iterator();
+    }
+  }
+
+  private void assertBandedAlignment(SimpleWitness[] w) {
+    VariantGraph g = new VariantGraph();
+    new EditGraphAligner().collate(g, w);
+
+    VariantGraph banded = new VariantGraph();
+    EditGraphAligner aligner = new EditGraphAligner();
+    aligner.setBanded(true);
+    aligner.collate(banded, w);
+    List<SortedMap<Witness, Set<Token>>> expected = table(g);
+    List<SortedMap<Witness, Set<Token>>> actual = table(banded);
+    for (SimpleWitness sw : w) {
+      assertThat(toString(actual, sw), is(toString(expected, sw)));
+    }
+  }
+
+  @Test
+  public void testParallelAlignment() {
+    // long enough for the table to be filled in parallel
+    final Random random = new Random(42);
+    final StringBuilder first = new StringBuilder();
+    final StringBuilder second = new StringBuilder();
+    for (int i = 0; i < 1200; i++) {
+      final String word = "w" + random.nextInt(300);
+      first.append(word).append(' ');
+      if (random.nextInt(10) > 0) {
+        second.append(random.nextInt(10) > 0 ? word : "v" + i).append(' ');
+      }
+    }
+    final SimpleWitness[] w = createWitnesses(first.toString(), second.toString());
+
+    VariantGraph sequential = new VariantGraph();
+    EditGraphAligner aligner = new EditGraphAligner();
+    aligner.setParallel(false);
+    aligner.collate(sequential, w);
+
+    VariantGraph parallel = new VariantGraph();
+    EditGraphAligner parallelAligner = new EditGraphAligner();
+    parallelAligner.setParallel(true);
+    parallelAligner.collate(parallel, w);
+
+    assertThat(parallelAligner.scores, is(aligner.scores));
+    assertThat(parallelAligner.traceback, is(aligner.traceback));
+    List<SortedMap<Witness, Set<Token>>> expected = table(sequential);
+    List<SortedMap<Witness, Set<Token>>> actual = table(parallel);
+    for (SimpleWitness sw : w) {
+      assertThat(toString(actual, sw), is(toString(expected, sw)));
+    }
+  }
+
   private void align(VariantGraph g, SimpleWitness[] w) {
     EditGraphAligner aligner = new EditGraphAligner();
     List<SimpleWitness> witnesses = new ArrayList<>();
@@ -0,0 +1,32 @@
+package eu.interedition.collatex.dekker.token_index;
+
+import eu.interedition.collatex.AbstractTest;
+import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleToken;
+import eu.interedition.collatex.simple.SimpleWitness;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenDictionaryTest extends AbstractTest {
+
+    @Test
+    public void separatorsAreClassesOfTheirOwn() {
+        final TokenDictionary dictionary = new TokenDictionary(new EqualityTokenComparator());
+        final SimpleWitness w1 = new SimpleWitness("A");
+        final SimpleWitness w2 = new SimpleWitness("B");
+
+        assertEquals(0, dictionary.classOf(new SimpleToken(w1, "a", "a")));
+        assertEquals(1, dictionary.classOf(new SimpleToken(w1, "b", "b")));
+        assertEquals(2, dictionary.separator());
+        assertEquals(0, dictionary.classOf(new SimpleToken(w2, "a", "a")));
+        assertEquals(3, dictionary.classOf(new SimpleToken(w2, "c", "c")));
+        assertEquals(4, dictionary.separator());
+        assertEquals(5, dictionary.size());
+
+        // no token belongs to a separator class, marker tokens included
+        assertEquals(-1, dictionary.lookup(new TokenIndex.MarkerToken(1)));
+        assertEquals(-1, dictionary.lookup(new SimpleToken(w2, "d", "d")));
+        assertEquals(1, dictionary.lookup(new SimpleToken(w2, "b", "b")));
+    }
+}
@@ -5,17 +5,30 @@ import eu.interedition.collatex.Token;
 import eu.interedition.collatex.Witness;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
 import eu.interedition.collatex.simple.SimpleWitness;
+import eu.interedition.collatex.suffixarray.Algorithm;
+import eu.interedition.collatex.suffixarray.AutoSuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.ParallelPrefixDoubling;
+import eu.interedition.collatex.suffixarray.SAIS;
+import eu.interedition.collatex.suffixarray.SuffixArrays;
+import eu.interedition.collatex.suffixarray.SuffixData;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * Created by ronald on 4/20/15.
  */
 public class TokenIndexTest extends AbstractTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     class MySpecialToken implements Token {
         private final Witness w;
         protected String specialContent;
@@ -150,7 +163,223 @@ public class TokenIndexTest extends AbstractTest {
         TokenIndex index = new TokenIndex(new MySpecialComparator(), tokens1, tokens2);
         index.prepare();
         assertEquals("[interesting, nice, huh, $1, very, nice, right, $2]", Arrays.toString(index.token_array));
-        Arrays.sort(index.token_array, new TokenIndex.MarkerTokenComparator(new MySpecialComparator()));
-        assertEquals("[$1, $2, huh, interesting, nice, nice, right, very]", Arrays.toString(index.token_array));
+        final Token[] sorted = index.token_array.clone();
+        Arrays.sort(sorted, markersFirst(index, new MySpecialComparator()));
+        assertEquals("[$1, $2, huh, interesting, nice, nice, right, very]", Arrays.toString(sorted));
+    }
+
+    @Test
+    public void tokenClassesSortLikeTokens() {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the White dog and the black cat", "a cat");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        assertEquals("[0, 1, 2, 3, 0, 4, 5, 6, 0, 4, 5, 3, 0, 1, 2, 7, 8, 2, 9]", Arrays.toString(index.token_class_array));
+
+        final SuffixData generic = SuffixArrays.createWithLCP(index.token_array, new SAIS(), markersFirst(index, new EqualityTokenComparator()));
+        assertEquals(Arrays.toString(generic.getSuffixArray()), Arrays.toString(index.suffix_array));
+        assertEquals(Arrays.toString(generic.getLCP()), Arrays.toString(index.LCP_array));
+    }
+
+    @Test
+    public void parallelSuffixArrayBuilder() {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the white dog and the black cat", "a cat");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        final TokenIndex parallelIndex = new TokenIndex(new EqualityTokenComparator(), Arrays.asList(w), new ParallelPrefixDoubling(true));
+        parallelIndex.prepare();
+        assertEquals(Arrays.toString(index.suffix_array), Arrays.toString(parallelIndex.suffix_array));
+        assertEquals(Arrays.toString(index.LCP_array), Arrays.toString(parallelIndex.LCP_array));
+    }
+
+    @Test
+    public void everySuffixArrayBuilder() {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the white dog and the black cat", "a cat", "the cat");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        final List<ISuffixArrayBuilder> builders = new ArrayList<>();
+        for (Algorithm algorithm : Algorithm.values()) {
+            // the decorated Skew builder has no instance of its own
+            builders.add(algorithm == Algorithm.SKEW_D ? Algorithm.SKEW.getDecoratedInstance() : algorithm.getInstance());
+        }
+        builders.add(new ParallelPrefixDoubling(false));
+        builders.add(new AutoSuffixArrayBuilder());
+        for (ISuffixArrayBuilder builder : builders) {
+            final String name = builder.getClass().getSimpleName();
+            final TokenIndex built = new TokenIndex(new EqualityTokenComparator(), Arrays.asList(w[0], w[1], w[2]), builder);
+            built.prepare();
+            built.addWitness(w[3]);
+            assertEquals(name, Arrays.toString(index.suffix_array), Arrays.toString(built.suffix_array));
+            assertEquals(name, Arrays.toString(index.LCP_array), Arrays.toString(built.LCP_array));
+        }
+    }
+
+    @Test
+    public void occurrenceTables() {
+        final SimpleWitness[] w = createWitnesses("the a the", "the a");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        // blocks: "the a" at 0, 4; "the" at 0, 2, 4; "a" at 1, 5
+        assertEquals("[0, 2, 5, 7]", Arrays.toString(index.block_offsets));
+        assertEquals("[0, 4, 0, 2, 4, 1, 5]", Arrays.toString(index.block_occurrence_array));
+        assertEquals("[0, 4, 7]", Arrays.toString(index.witness_offsets));
+        assertEquals("[0, 1, 1, 2, 0, 1, 2]", Arrays.toString(index.witness_block_array));
+        assertEquals("[0, 0, 2, 1, 4, 4, 5]", Arrays.toString(index.witness_start_token_array));
+        // occurrences in the first witness only
+        assertEquals(1, index.getOccurrencesEndBefore(0, 4));
+        assertEquals(4, index.getOccurrencesEndBefore(1, 4));
+        assertEquals(5, index.getOccurrencesEndBefore(2, 0));
+        assertEquals("[the a, the, a]", index.getBlockInstancesForWitness(w[1]).toString());
+    }
+
+    @Test
+    public void blockDepthsMatchWitnessCounts() {
+        final SimpleWitness[] w = createWitnesses("a b a c a b", "b a c a", "c a b c a b a", "a a b", "d");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        for (Block block : index.blocks) {
+            assertEquals(block.toString(), new Block(index, block.start, block.end, block.length).getDepth(), block.getDepth());
+        }
+    }
+
+    @Test
+    public void addWitnessesWithoutRebuild() {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the white dog and the black cat", "a cat", "the cat and the dog and the cat", "dog");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w[0], w[1]);
+        index.prepare();
+        for (int added = 2; added < w.length; added++) {
+            index.addWitness(w[added]);
+            assertSameIndex(Arrays.copyOf(w, added + 1), index);
+        }
+        // the child table is rebuilt for searches
+        assertEquals(5, index.find(createWitnesses("cat")[0].getTokens()).get().getFrequency());
+    }
+
+    @Test
+    public void addRepetitiveWitnesses() {
+        final Random random = new Random(7);
+        for (int run = 0; run < 20; run++) {
+            final String[] contents = new String[5];
+            for (int c = 0; c < contents.length; c++) {
+                final StringBuilder content = new StringBuilder("a");
+                for (int t = random.nextInt(12); t > 0; t--) {
+                    content.append(' ').append((char) ('a' + random.nextInt(3)));
+                }
+                contents[c] = content.toString();
+            }
+            final SimpleWitness[] w = createWitnesses(contents);
+            final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w[0]);
+            index.prepare();
+            for (int added = 1; added < w.length; added++) {
+                index.addWitness(w[added]);
+                assertSameIndex(Arrays.copyOf(w, added + 1), index);
+            }
+        }
+    }
+
+    // compares an index with one prepared from the given witnesses
+    private void assertSameIndex(SimpleWitness[] witnesses, TokenIndex index) {
+        final TokenIndex rebuilt = new TokenIndex(new EqualityTokenComparator(), witnesses);
+        rebuilt.prepare();
+        assertEquals(Arrays.toString(rebuilt.token_array), Arrays.toString(index.token_array));
+        assertEquals(Arrays.toString(rebuilt.suffix_array), Arrays.toString(index.suffix_array));
+        assertEquals(Arrays.toString(rebuilt.LCP_array), Arrays.toString(index.LCP_array));
+        assertEquals(rebuilt.blocks.size(), index.blocks.size());
+        for (int b = 0; b < rebuilt.blocks.size(); b++) {
+            assertLCP_Interval(rebuilt.blocks.get(b).start, rebuilt.blocks.get(b).length, rebuilt.blocks.get(b).getDepth(), rebuilt.blocks.get(b).getFrequency(), index.blocks.get(b));
+        }
+        assertEquals(Arrays.toString(rebuilt.block_offsets), Arrays.toString(index.block_offsets));
+        assertEquals(Arrays.toString(rebuilt.block_occurrence_array), Arrays.toString(index.block_occurrence_array));
+        assertEquals(Arrays.toString(rebuilt.witness_offsets), Arrays.toString(index.witness_offsets));
+        assertEquals(Arrays.toString(rebuilt.witness_block_array), Arrays.toString(index.witness_block_array));
+        assertEquals(Arrays.toString(rebuilt.witness_start_token_array), Arrays.toString(index.witness_start_token_array));
+        for (SimpleWitness witness : witnesses) {
+            assertEquals(rebuilt.getStartTokenPositionForWitness(witness), index.getStartTokenPositionForWitness(witness));
+            assertEquals(rebuilt.getBlockInstancesForWitness(witness).toString(), index.getBlockInstancesForWitness(witness).toString());
+        }
+    }
+
+    @Test
+    public void cache() throws Exception {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the white dog and the black cat", "a cat");
+        final TokenIndexCache cache = new TokenIndexCache(folder.getRoot().toPath());
+        final TokenIndex stored = new TokenIndex(new EqualityTokenComparator(), w);
+        stored.setCache(cache);
+        stored.prepare();
+        assertEquals(1, folder.getRoot().list().length);
+
+        final TokenIndex loaded = new TokenIndex(new EqualityTokenComparator(), createWitnesses("The black cat and the white dog", "the white dog and the black cat", "a cat"));
+        loaded.setCache(cache);
+        loaded.prepare();
+        assertEquals(1, folder.getRoot().list().length);
+        assertEquals(Arrays.toString(stored.suffix_array), Arrays.toString(loaded.suffix_array));
+        assertEquals(Arrays.toString(stored.LCP_array), Arrays.toString(loaded.LCP_array));
+        assertEquals(stored.blocks.toString(), loaded.blocks.toString());
+        assertEquals(Arrays.toString(stored.block_occurrence_array), Arrays.toString(loaded.block_occurrence_array));
+
+        // other witness boundaries
+        final TokenIndex other = new TokenIndex(new EqualityTokenComparator(), createWitnesses("the black cat and the white dog the white", "dog and the black cat", "a cat"));
+        other.setCache(cache);
+        other.prepare();
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void blocksAreMaximalIntervals() {
+        final SimpleWitness[] w = createWitnesses("a q a b x a b y a", "q");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        assertEquals("[-1, 1, 2, 1, 0, 1, 0, 1, 0, 0, 0, 0]", Arrays.toString(index.LCP_array));
+        // "a b" nested in "a", which is not split at the end of "a b"
+        assertLCP_Interval(1, 2, 1, 2, index.blocks.get(0));
+        assertLCP_Interval(0, 1, 1, 4, index.blocks.get(1));
+        assertEquals(4, index.blocks.size());
+    }
+
+    @Test
+    public void findPhrases() {
+        final SimpleWitness[] w = createWitnesses("the black cat and the white dog", "the white dog and the black cat", "a cat");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        final Block found = index.find(createWitnesses("The white")[0].getTokens()).get();
+        assertEquals(2, found.getFrequency());
+        assertEquals(2, found.getDepth());
+        assertEquals("[the white, the white]", found.getAllInstances().toString());
+        assertEquals(3, index.find(createWitnesses("cat")[0].getTokens()).get().getFrequency());
+        assertFalse(index.find(createWitnesses("white cat")[0].getTokens()).isPresent());
+        assertFalse(index.find(createWitnesses("mouse")[0].getTokens()).isPresent());
+    }
+
+    @Test
+    public void blocksStayWithinWitnesses() {
+        // the end of each witness continues with the start of the next one
+        final SimpleWitness[] w = createWitnesses("a b c", "a b c", "c a b c", "b c a");
+        final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), w);
+        index.prepare();
+        assertEquals("[0, 1, 2, 3, 0, 1, 2, 4, 2, 0, 1, 2, 5, 1, 2, 0, 6]", Arrays.toString(index.token_class_array));
+        for (Block block : index.blocks) {
+            for (Block.Instance instance : block.getAllInstances()) {
+                final int last = instance.start_token + block.length - 1;
+                assertEquals(instance.toString(), index.witness_ordinal_array[instance.start_token], index.witness_ordinal_array[last]);
+                assertFalse(instance.toString(), index.token_array[last] instanceof TokenIndex.MarkerToken);
+            }
+        }
+    }
+
+    // orders the marker tokens of the given index before all other tokens, in the order of their witnesses
+    private static Comparator<Token> markersFirst(TokenIndex index, Comparator<Token> comparator) {
+        final Map<Token, Integer> markers = new IdentityHashMap<>();
+        for (Token token : index.token_array) {
+            if (token instanceof TokenIndex.MarkerToken) {
+                markers.put(token, markers.size());
+            }
+        }
+        return (a, b) -> {
+            final Integer markerA = markers.get(a);
+            final Integer markerB = markers.get(b);
+            if (markerA != null) {
+                return (markerB == null ? -1 : Integer.compare(markerA, markerB));
+            }
+            return (markerB == null ? comparator.compare(a, b) : 1);
+        };
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.lab;
+
+import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.dekker.DekkerAlgorithm;
+import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleWitness;
+
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the running time of {@link VariantGraph#JOIN} and {@link VariantGraph#LEGACY_JOIN} on graphs of generated,
+ * randomly varied witnesses.
+ * <p>
+ * Usage: <code>JoinBenchmark [witnesses [words [rounds]]]</code>
+ */
+public class JoinBenchmark {
+
+    private static final String[] VOCABULARY = "the a black white cat dog chases eats his her food again and or not yet".split(" ");
+
+    public static void main(String[] args) {
+        final int witnessCount = (args.length > 0 ? Integer.parseInt(args[0]) : 8);
+        final int words = (args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+        final int rounds = (args.length > 2 ? Integer.parseInt(args[2]) : 5);
+
+        final SimpleWitness[] witnesses = witnesses(witnessCount, words, new Random(42));
+        for (int round = 1; round <= rounds; round++) {
+            final long legacy = time(VariantGraph.LEGACY_JOIN, witnesses);
+            final long linear = time(VariantGraph.JOIN, witnesses);
+            System.out.printf("round %d: legacy join %d ms, linear join %d ms%n", round, legacy, linear);
+        }
+    }
+
+    private static long time(Function<VariantGraph, VariantGraph> join, SimpleWitness[] witnesses) {
+        final DekkerAlgorithm algorithm = new DekkerAlgorithm(new EqualityTokenComparator());
+        algorithm.setMergeTranspositions(true);
+
+        final VariantGraph graph = new VariantGraph();
+        algorithm.collate(graph, witnesses);
+
+        final long start = System.nanoTime();
+        join.apply(graph);
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    private static SimpleWitness[] witnesses(int count, int words, Random random) {
+        final String[] base = IntStream.range(0, words)
+            .mapToObj(w -> VOCABULARY[random.nextInt(VOCABULARY.length)])
+            .toArray(String[]::new);
+        return IntStream.range(0, count)
+            .mapToObj(w -> new SimpleWitness("W" + w, IntStream.range(0, words)
+                .mapToObj(i -> random.nextInt(20) == 0 ? VOCABULARY[random.nextInt(VOCABULARY.length)] : base[i])
+                .collect(Collectors.joining(" "))))
+            .toArray(SimpleWitness[]::new);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.interedition.collatex.lab;
+
+import eu.interedition.collatex.suffixarray.AutoSuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.BPR;
+import eu.interedition.collatex.suffixarray.DeepShallow;
+import eu.interedition.collatex.suffixarray.DivSufSort;
+import eu.interedition.collatex.suffixarray.ExtraTrailingCellsDecorator;
+import eu.interedition.collatex.suffixarray.ISuffixArrayBuilder;
+import eu.interedition.collatex.suffixarray.ParallelPrefixDoubling;
+import eu.interedition.collatex.suffixarray.QSufSort;
+import eu.interedition.collatex.suffixarray.SAIS;
+import eu.interedition.collatex.suffixarray.Skew;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the running time of the suffix array builders on token class sequences, as built by the token index: a
+ * number of witnesses, which vary a base text drawn from a Zipf-distributed vocabulary, each followed by a marker
+ * class of its own. The crossover points of {@link AutoSuffixArrayBuilder} have been derived from its results.
+ * <p>
+ * Usage: <code>SuffixArrayBuilderBenchmark [witnesses [rounds]]</code>
+ */
+public class SuffixArrayBuilderBenchmark {
+
+    private static final int[] LENGTHS = { 1000, 10000, 100000, 1000000 };
+    private static final int[] VOCABULARIES = { 100, 2000, 50000 };
+    private static final int TRAILING_SPACE = 1024;
+
+    public static void main(String[] args) {
+        final int witnessCount = (args.length > 0 ? Integer.parseInt(args[0]) : 8);
+        final int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+
+        final Map<String, IntFunction<ISuffixArrayBuilder>> builders = new LinkedHashMap<>();
+        builders.put("SAIS", alphabet -> new SAIS());
+        builders.put("DivSufSort", alphabet -> (alphabet <= 2048 ? new DivSufSort(alphabet) : null));
+        builders.put("QSufSort", alphabet -> new QSufSort(true));
+        builders.put("BPR", alphabet -> (alphabet <= 256 ? new BPR(true) : null));
+        builders.put("DeepShallow", alphabet -> (alphabet <= 256 ? new DeepShallow(true) : null));
+        builders.put("Skew", alphabet -> new ExtraTrailingCellsDecorator(new Skew(), 3));
+        builders.put("parallel", alphabet -> new ParallelPrefixDoubling());
+        builders.put("auto", alphabet -> new AutoSuffixArrayBuilder());
+
+        for (int length : LENGTHS) {
+            for (int vocabulary : VOCABULARIES) {
+                final int[] input = tokenClasses(witnessCount, length, vocabulary, new Random(42));
+                final int alphabet = Arrays.stream(input).max().orElse(0) + 1;
+                final StringBuilder result = new StringBuilder(String.format("length %8d, alphabet %6d:", length, alphabet));
+                for (Map.Entry<String, IntFunction<ISuffixArrayBuilder>> builder : builders.entrySet()) {
+                    if (builder.getValue().apply(alphabet) == null) {
+                        continue;
+                    }
+                    long best = Long.MAX_VALUE;
+                    for (int round = 0; round < rounds; round++) {
+                        final ISuffixArrayBuilder instance = builder.getValue().apply(alphabet);
+                        // leave trailing space as required by some of the builders
+                        final int[] copy = Arrays.copyOf(input, input.length + TRAILING_SPACE);
+                        final long start = System.nanoTime();
+                        instance.buildSuffixArray(copy, 0, input.length);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    result.append(String.format(" %s %.2f ms,", builder.getKey(), best / 1e6));
+                }
+                System.out.println(result);
+            }
+        }
+    }
+
+    private static int[] tokenClasses(int witnesses, int length, int vocabulary, Random random) {
+        final double[] cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int w = 0; w < vocabulary; w++) {
+            cumulative[w] = (sum += 1.0 / (w + 1));
+        }
+        final int words = Math.max(1, length / witnesses - 1);
+        final int[] base = new int[words];
+        for (int i = 0; i < words; i++) {
+            base[i] = word(cumulative, random);
+        }
+
+        // classes are numbered by first occurrence, like in the token index
+        final int[] classes = new int[vocabulary + witnesses];
+        Arrays.fill(classes, -1);
+        int next = 0;
+        final int[] input = new int[witnesses * (words + 1)];
+        int position = 0;
+        for (int w = 0; w < witnesses; w++) {
+            for (int i = 0; i < words; i++) {
+                final int word = (random.nextInt(20) == 0 ? word(cumulative, random) : base[i]);
+                input[position++] = (classes[word] < 0 ? (classes[word] = next++) : classes[word]);
+            }
+            input[position++] = next++;
+        }
+        return input;
+    }
+
+    private static int word(double[] cumulative, Random random) {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+        return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 The Interedition Development Group.
+ *
+ * This file is part of CollateX.
+ *
+ * CollateX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CollateX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CollateX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package eu.interedition.collatex.lab;
+
+import eu.interedition.collatex.Token;
+import eu.interedition.collatex.dekker.token_index.TokenIndex;
+import eu.interedition.collatex.matching.EqualityTokenComparator;
+import eu.interedition.collatex.simple.SimpleWitness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the running time of {@link TokenIndex#addWitness(Iterable) adding a witness} to a prepared token index with
+ * {@link TokenIndex#prepare() preparing} an index of all witnesses again, on generated, randomly varied witnesses.
+ * <p>
+ * Usage: <code>TokenIndexBenchmark [witnesses [words [rounds]]]</code>
+ */
+public class TokenIndexBenchmark {
+
+    private static final int VOCABULARY = 2000;
+
+    public static void main(String[] args) {
+        final int witnessCount = (args.length > 0 ? Integer.parseInt(args[0]) : 8);
+        final int words = (args.length > 1 ? Integer.parseInt(args[1]) : 20000);
+        final int rounds = (args.length > 2 ? Integer.parseInt(args[2]) : 10);
+
+        final List<SimpleWitness> witnesses = witnesses(witnessCount, words, new Random(42));
+        final List<SimpleWitness> indexed = witnesses.subList(0, witnessCount - 1);
+        final SimpleWitness added = witnesses.get(witnessCount - 1);
+        long incremental = Long.MAX_VALUE;
+        long full = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            final TokenIndex index = new TokenIndex(new EqualityTokenComparator(), new ArrayList<Iterable<Token>>(indexed));
+            index.prepare();
+            long start = System.nanoTime();
+            index.addWitness(added);
+            incremental = Math.min(incremental, System.nanoTime() - start);
+
+            final TokenIndex rebuilt = new TokenIndex(new EqualityTokenComparator(), new ArrayList<Iterable<Token>>(witnesses));
+            start = System.nanoTime();
+            rebuilt.prepare();
+            full = Math.min(full, System.nanoTime() - start);
+
+            if (!Arrays.equals(index.suffix_array, rebuilt.suffix_array) || !Arrays.equals(index.LCP_array, rebuilt.LCP_array)
+                || !Arrays.equals(index.block_occurrence_array, rebuilt.block_occurrence_array)
+                || !Arrays.equals(index.witness_block_array, rebuilt.witness_block_array)) {
+                throw new IllegalStateException("Indexes differ");
+            }
+        }
+        System.out.printf("%d witnesses of %d words: added witness in %.2f ms, prepared all witnesses in %.2f ms%n",
+            witnessCount, words, incremental / 1e6, full / 1e6);
+    }
+
+    private static List<SimpleWitness> witnesses(int count, int words, Random random) {
+        final String[] base = IntStream.range(0, words)
+            .mapToObj(w -> "w" + random.nextInt(VOCABULARY))
+            .toArray(String[]::new);
+        return IntStream.range(0, count)
+            .mapToObj(w -> new SimpleWitness("W" + w, IntStream.range(0, words)
+                .mapToObj(i -> random.nextInt(20) == 0 ? "w" + random.nextInt(VOCABULARY) : base[i])
+                .collect(Collectors.joining(" "))))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,62 @@
+package eu.interedition.collatex.suffixarray;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class AutoSuffixArrayBuilderTest {
+
+    @Test
+    public void smallInput() {
+        assertSameAsSAIS(random(500, 2000));
+    }
+
+    @Test
+    public void smallAlphabet() {
+        assertSameAsSAIS(random(AutoSuffixArrayBuilder.SMALL_INPUT * 2, 20));
+    }
+
+    @Test
+    public void largeAlphabet() {
+        assertSameAsSAIS(random(AutoSuffixArrayBuilder.SMALL_INPUT * 2, 5000));
+    }
+
+    @Test
+    public void negativeSymbols() {
+        final int[] input = random(1000, 100);
+        final int[] shifted = Arrays.stream(input).map(s -> s - 50).toArray();
+        assertArrayEquals(new SAIS().buildSuffixArray(input, 0, input.length), new AutoSuffixArrayBuilder().buildSuffixArray(shifted, 0, shifted.length));
+        assertArrayEquals(Arrays.stream(input).map(s -> s - 50).toArray(), shifted);
+    }
+
+    @Test
+    public void offset() {
+        final int[] input = random(1000, 100);
+        final int[] padded = new int[input.length + 10];
+        System.arraycopy(input, 0, padded, 5, input.length);
+        assertArrayEquals(new SAIS().buildSuffixArray(input, 0, input.length), new AutoSuffixArrayBuilder().buildSuffixArray(padded, 5, input.length));
+    }
+
+    @Test
+    public void emptyInput() {
+        assertArrayEquals(new int[0], new AutoSuffixArrayBuilder().buildSuffixArray(new int[0], 0, 0));
+    }
+
+    private static void assertSameAsSAIS(int[] input) {
+        final int[] expected = new SAIS().buildSuffixArray(input.clone(), 0, input.length);
+        assertArrayEquals(expected, new AutoSuffixArrayBuilder().buildSuffixArray(input, 0, input.length));
+    }
+
+    private static int[] random(int length, int alphabet) {
+        final Random random = new Random(length ^ alphabet);
+        final int[] input = new int[length];
+        for (int i = 0; i < length; i++) {
+            // skewed towards few symbols, like tokens of natural language
+            input[i] = (int) (alphabet * Math.pow(random.nextDouble(), 3));
+        }
+        return input;
+    }
+}
@@ -0,0 +1,100 @@
+package eu.interedition.collatex.suffixarray;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChildTableTest {
+
+    @Test
+    public void intervalsAndChildren() {
+        final Random random = new Random(1);
+        for (int alphabet : new int[] { 1, 2, 4, 50 }) {
+            final int[] input = random.ints(2000, 0, alphabet).toArray();
+            final int[] sa = new AutoSuffixArrayBuilder().buildSuffixArray(input, 0, input.length);
+            final int[] lcp = SuffixArrays.computeLCP(input, 0, input.length, sa);
+            final ChildTable childTable = ChildTable.of(lcp);
+
+            final List<int[]> intervals = new ArrayList<>();
+            ChildTable.forEachInterval(lcp, (l, lb, rb) -> intervals.add(new int[] { l, lb, rb }));
+            int previousRb = 0;
+            for (int[] interval : intervals) {
+                final int l = interval[0], lb = interval[1], rb = interval[2];
+                assertTrue(rb >= previousRb);
+                previousRb = rb;
+                // maximal range of suffixes sharing a prefix of length l
+                assertEquals(l, Arrays.stream(lcp, lb + 1, rb + 1).min().getAsInt());
+                assertTrue(lb == 0 || lcp[lb] < l);
+                assertTrue(rb == lcp.length - 1 || lcp[rb + 1] < l);
+                assertEquals(l, childTable.intervalLcp(lb, rb));
+
+                // children partition the interval at its l-indices
+                final List<int[]> children = new ArrayList<>();
+                childTable.forEachChild(lb, rb, (cl, clb, crb) -> children.add(new int[] { cl, clb, crb }));
+                int next = lb;
+                for (int[] child : children) {
+                    assertEquals(next, child[1]);
+                    assertTrue(child[1] == lb || lcp[child[1]] == l);
+                    assertTrue(child[1] == child[2] ? child[0] == -1 : child[0] > l);
+                    next = child[2] + 1;
+                }
+                assertEquals(rb + 1, next);
+                assertTrue(children.size() >= 2);
+            }
+            final long expectedIntervals = distinctIntervals(lcp);
+            assertEquals(expectedIntervals, intervals.size());
+        }
+    }
+
+    @Test
+    public void find() {
+        final int[] input = new Random(2).ints(3000, 0, 3).toArray();
+        final int[] sa = new AutoSuffixArrayBuilder().buildSuffixArray(input, 0, input.length);
+        final int[] lcp = SuffixArrays.computeLCP(input, 0, input.length, sa);
+        final ChildTable childTable = ChildTable.of(lcp);
+        final Random random = new Random(3);
+        for (int p = 0; p < 500; p++) {
+            final int[] pattern = random.ints(1 + random.nextInt(12), 0, 3).toArray();
+            int lb = -1, rb = -1;
+            for (int i = 0; i < sa.length; i++) {
+                if (startsWith(input, sa[i], pattern)) {
+                    lb = (lb < 0 ? i : lb);
+                    rb = i;
+                }
+            }
+            assertEquals(Arrays.toString(pattern), lb < 0 ? -1 : ((long) lb << 32) | rb, childTable.find(input, 0, sa, pattern));
+        }
+        assertEquals(-1, childTable.find(input, 0, sa, new int[] { 7 }));
+    }
+
+    private static boolean startsWith(int[] input, int suffix, int[] pattern) {
+        for (int i = 0; i < pattern.length; i++) {
+            if (suffix + i >= input.length || input[suffix + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // each distinct combination of lcp value and left boundary found by naive expansion
+    private static long distinctIntervals(int[] lcp) {
+        final java.util.Set<String> intervals = new java.util.HashSet<>();
+        for (int k = 1; k < lcp.length; k++) {
+            final int l = lcp[k];
+            if (l <= 0) {
+                continue;
+            }
+            int lb = k - 1, rb = k;
+            while (lb > 0 && lcp[lb] >= l) lb--;
+            while (rb + 1 < lcp.length && lcp[rb + 1] >= l) rb++;
+            intervals.add(l + ":" + lb + ":" + rb);
+        }
+        return intervals.size();
+    }
+}
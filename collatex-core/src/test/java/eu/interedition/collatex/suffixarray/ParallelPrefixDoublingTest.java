@@ -0,0 +1,54 @@
+package eu.interedition.collatex.suffixarray;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ParallelPrefixDoublingTest {
+
+    @Test
+    public void randomInput() {
+        final Random random = new Random(1);
+        for (int alphabet : new int[] { 1, 2, 20, 5000 }) {
+            final int[] input = random.ints(50000, 0, alphabet).toArray();
+            assertSameAsSAIS(input);
+        }
+    }
+
+    @Test
+    public void repeats() {
+        // long repeats need many rounds
+        final int[] base = new Random(2).ints(5000, 0, 50).toArray();
+        final int[] input = new int[(base.length + 1) * 4];
+        for (int r = 0; r < 4; r++) {
+            System.arraycopy(base, 0, input, r * (base.length + 1), base.length);
+            input[r * (base.length + 1) + base.length] = 50 + r;
+        }
+        assertSameAsSAIS(input);
+    }
+
+    @Test
+    public void negativeSymbolsAndOffset() {
+        final int[] input = new Random(3).ints(1000, -100, 100).toArray();
+        final int[] shifted = Arrays.stream(input).map(s -> s + 100).toArray();
+        final int[] padded = new int[input.length + 7];
+        System.arraycopy(input, 0, padded, 7, input.length);
+        assertArrayEquals(new SAIS().buildSuffixArray(shifted, 0, shifted.length), new ParallelPrefixDoubling().buildSuffixArray(padded, 7, input.length));
+    }
+
+    @Test
+    public void tinyInput() {
+        assertArrayEquals(new int[0], new ParallelPrefixDoubling().buildSuffixArray(new int[0], 0, 0));
+        assertArrayEquals(new int[] { 0 }, new ParallelPrefixDoubling().buildSuffixArray(new int[] { 7 }, 0, 1));
+        assertArrayEquals(new int[] { 1, 0 }, new ParallelPrefixDoubling().buildSuffixArray(new int[] { 7, 7 }, 0, 2));
+    }
+
+    private static void assertSameAsSAIS(int[] input) {
+        final int[] expected = new SAIS().buildSuffixArray(input.clone(), 0, input.length);
+        assertArrayEquals(expected, new ParallelPrefixDoubling(true).buildSuffixArray(input, 0, input.length));
+        assertArrayEquals(expected, new ParallelPrefixDoubling(false).buildSuffixArray(input, 0, input.length));
+    }
+}
@@ -0,0 +1,38 @@
+package eu.interedition.collatex.suffixarray;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SuffixArraysTest {
+
+    @Test
+    public void inPlaceLCP() {
+        final Random random = new Random(1);
+        for (int alphabet : new int[] { 1, 3, 5000 }) {
+            assertSameLCP(random.ints(20000, 0, alphabet).toArray(), 0, 20000);
+        }
+        // long repeats
+        final int[] repeated = new int[20000];
+        final int[] half = random.ints(10000, 0, 3).toArray();
+        System.arraycopy(half, 0, repeated, 0, half.length);
+        System.arraycopy(half, 0, repeated, half.length, half.length);
+        assertSameLCP(repeated, 0, repeated.length);
+        // offset
+        assertSameLCP(random.ints(1000, 0, 10).toArray(), 17, 900);
+    }
+
+    @Test
+    public void inPlaceLCPOfTinyInput() {
+        assertArrayEquals(new int[0], SuffixArrays.computeLCPInPlace(new int[0], 0, 0, new int[0]));
+        assertArrayEquals(new int[] { -1 }, SuffixArrays.computeLCPInPlace(new int[] { 7 }, 0, 1, new int[] { 0 }));
+        assertArrayEquals(new int[] { -1, 1 }, SuffixArrays.computeLCPInPlace(new int[] { 7, 7 }, 0, 2, new int[] { 1, 0 }));
+    }
+
+    private static void assertSameLCP(int[] input, int start, int length) {
+        final int[] sa = new AutoSuffixArrayBuilder().buildSuffixArray(input, start, length);
+        assertArrayEquals(SuffixArrays.computeLCP(input, start, length, sa), SuffixArrays.computeLCPInPlace(input, start, length, sa));
+    }
+}
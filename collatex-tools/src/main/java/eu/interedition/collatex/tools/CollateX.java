@@ -84,9 +84,11 @@ public class CollateX {
         OPTIONS.addOption("xml", "xml-mode", false, "witnesses are treated as XML documents");
         OPTIONS.addOption("xp", "xpath", true, "XPath 1.0 expression evaluating to tokens of XML witnesses; default: '//text()'");
         OPTIONS.addOption("a", "algorithm", true, "progressive alignment algorithm to use 'dekker' (default), 'medite', 'needleman-wunsch'");
+        OPTIONS.addOption("g", "graph", true, "variant graph implementation to collate into: 'default', 'compact', 'mapped' (stored in a temporary directory)");
         OPTIONS.addOption("t", "tokenized", false, "consecutive matches of tokens will *not* be joined to segments");
         OPTIONS.addOption("f", "format", true, "result/output format: 'json', 'csv', 'dot', 'graphml', 'tei'");
         OPTIONS.addOption("s", "script", true, "ECMA/JavaScript resource with functions to be plugged into the alignment algorithm");
+        OPTIONS.addOption("ic", "index-cache", true, "directory, in which token indexes of the default algorithm are cached for repeated collations of the same witnesses");
 
         OPTIONS.addOption("S", "http", false, "start RESTful HTTP server");
         OPTIONS.addOption("cp", "context-path", true, "URL base/context path of the service, default: '/'");
@@ -94,6 +96,7 @@ public class CollateX {
         OPTIONS.addOption("p", "port", true, "HTTP port to bind server to, default: 7369");
         OPTIONS.addOption("mpc", "max-parallel-collations", true, "maximum number of collations to perform in parallel, default: 2");
         OPTIONS.addOption("mcs", "max-collation-size", true, "maximum number of characters (counted over all witnesses) to perform collations on, default: unlimited");
+        OPTIONS.addOption("mgs", "max-graph-size", true, "maximum estimated heap size of a collation's variant graph in MiB, checked before collating, default: unlimited");
 
     }
 }
@@ -22,7 +22,11 @@ package eu.interedition.collatex.tools;
 import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.CollationAlgorithmFactory;
 import eu.interedition.collatex.Token;
+import eu.interedition.collatex.MappedVariantGraph;
 import eu.interedition.collatex.VariantGraph;
+import eu.interedition.collatex.dekker.DekkerAlgorithm;
+import eu.interedition.collatex.dekker.editgraphaligner.EditGraphAligner;
+import eu.interedition.collatex.dekker.token_index.TokenIndexCache;
 import eu.interedition.collatex.matching.EqualityTokenComparator;
 import eu.interedition.collatex.simple.*;
 import org.apache.commons.cli.CommandLine;
@@ -44,11 +48,13 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -62,6 +68,7 @@ public class CollationPipe {
         Function<String, String> normalizer = SimpleTokenNormalizers.LC_TRIM_WS;
         Comparator<Token> comparator = new EqualityTokenComparator();
         CollationAlgorithm collationAlgorithm = null;
+        Supplier<VariantGraph> graphFactory = VariantGraph::new;
         boolean joined = true;
 
         final String[] witnessSpecs = commandLine.getArgs();
@@ -81,6 +88,7 @@ public class CollationPipe {
                 final SimpleCollation collation = JsonProcessor.read(inputStream);
                 witnesses = collation.getWitnesses();
                 collationAlgorithm = collation.getAlgorithm();
+                graphFactory = collation.getGraphFactory();
                 joined = collation.isJoined();
             }
         }
@@ -149,7 +157,35 @@ public class CollationPipe {
             }
         }
 
-        final VariantGraph variantGraph = new VariantGraph();
+        if (commandLine.hasOption("g")) {
+            try {
+                graphFactory = JsonProcessor.graphType(commandLine.getOptionValue("g"));
+            } catch (IOException e) {
+                throw new ParseException(e.getMessage());
+            }
+        }
+
+        if (commandLine.hasOption("ic")) {
+            final TokenIndexCache tokenIndexCache = new TokenIndexCache(Paths.get(commandLine.getOptionValue("ic")));
+            if (collationAlgorithm instanceof EditGraphAligner) {
+                ((EditGraphAligner) collationAlgorithm).setTokenIndexCache(tokenIndexCache);
+            } else if (collationAlgorithm instanceof DekkerAlgorithm) {
+                ((DekkerAlgorithm) collationAlgorithm).setTokenIndexCache(tokenIndexCache);
+            }
+        }
+
+        final VariantGraph variantGraph = graphFactory.get();
+        try {
+            collateAndWrite(commandLine, collationAlgorithm, variantGraph, witnesses, joined);
+        } finally {
+            if (variantGraph instanceof MappedVariantGraph) {
+                ((MappedVariantGraph) variantGraph).delete();
+            }
+        }
+    }
+
+    private static void collateAndWrite(CommandLine commandLine, CollationAlgorithm collationAlgorithm, VariantGraph variantGraph,
+                                        List<SimpleWitness> witnesses, boolean joined) throws IOException, ParseException {
         collationAlgorithm.collate(variantGraph, witnesses);
 
         if (joined && !commandLine.hasOption("t")) {
@@ -55,11 +55,12 @@ public class CollationServer {
     private static final Logger LOG = Logger.getLogger(CollationServer.class.getName());
 
     private final int maxCollationSize;
+    private final long maxGraphSize;
     private final String dotPath;
     private final ExecutorService collationThreads;
     private final ExecutorService processThreads = Executors.newCachedThreadPool();
 
-    public CollationServer(int maxParallelCollations, int maxCollationSize, String dotPath) {
+    public CollationServer(int maxParallelCollations, int maxCollationSize, long maxGraphSize, String dotPath) {
         this.collationThreads = Executors.newFixedThreadPool(maxParallelCollations, new ThreadFactory() {
             private final AtomicLong counter = new AtomicLong();
 
@@ -73,6 +74,7 @@ public class CollationServer {
         });
 
         this.maxCollationSize = maxCollationSize;
+        this.maxGraphSize = maxGraphSize;
         this.dotPath = dotPath;
     }
 
@@ -80,6 +82,7 @@ public class CollationServer {
         final CollationServer collator = new CollationServer(
             Integer.parseInt(commandLine.getOptionValue("mpc", "2")),
             Integer.parseInt(commandLine.getOptionValue("mcs", "0")),
+            Long.parseLong(commandLine.getOptionValue("mgs", "0")) * 1024 * 1024,
             Optional.ofNullable(commandLine.getOptionValue("dot")).orElse(detectDotPath())
         );
         final String staticPath = System.getProperty("collatex.static.path", "");
@@ -141,11 +144,33 @@ public class CollationServer {
             }
         }
 
+        // read collations always come with a graph type, which is checked before creating any graph
+        final JsonProcessor.GraphType graphType = (JsonProcessor.GraphType) collation.getGraphFactory();
+        if (graphType == JsonProcessor.GraphType.MAPPED) {
+            // graphs in temporary files are not offered to remote clients
+            response.sendError(400, "Unsupported variant graph type");
+            return;
+        }
+        if (maxGraphSize > 0) {
+            // upper bound: no tokens are aligned, every witness adds an edge to the end vertex
+            int tokens = 0;
+            for (SimpleWitness witness : collation.getWitnesses()) {
+                tokens += witness.getTokens().size();
+            }
+            final int witnesses = collation.getWitnesses().size();
+            if (graphType.estimateHeapSize(tokens + 2, tokens + witnesses, tokens) > maxGraphSize) {
+                response.sendError(413, "Request Entity Too Large");
+                return;
+            }
+        }
+
         response.suspend(60, TimeUnit.SECONDS, new EmptyCompletionHandler<>());
         collationThreads.submit(() -> {
             try {
-                final VariantGraph graph = new VariantGraph();
-                collation.collate(graph);
+                final long collationStart = System.nanoTime();
+                final VariantGraph graph = collation.collate(graphType.get()).freeze();
+                LOG.info(() -> String.format("Collated %d witness(es) in %d ms: %s",
+                    collation.getWitnesses().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - collationStart), graph.statistics()));
 
                 // CORS support
                 response.setHeader("Access-Control-Allow-Origin", Optional.ofNullable(request.getHeader("Origin")).orElse("*"));
@@ -21,6 +21,8 @@ package eu.interedition.collatex.tools;
 
 import eu.interedition.collatex.CollationAlgorithm;
 import eu.interedition.collatex.CollationAlgorithmFactory;
+import eu.interedition.collatex.CompactVariantGraph;
+import eu.interedition.collatex.MappedVariantGraph;
 import eu.interedition.collatex.VariantGraph;
 import eu.interedition.collatex.Witness;
 import eu.interedition.collatex.dekker.InspectableCollationAlgorithm;
@@ -46,12 +48,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.Supplier;
 import java.util.stream.StreamSupport;
 
 /**
@@ -204,10 +209,81 @@ public class JsonProcessor {
                 }
                 ((InspectableCollationAlgorithm) collationAlgorithm).setMergeTranspositions(mergeTranspositions);
             }
-            return new SimpleCollation(witnesses, collationAlgorithm, joined);
+
+            GraphType graphType = GraphType.DEFAULT;
+            final JsonValue graphNode = collationObject.get("graph");
+            if (graphNode != null && graphNode.getValueType() == JsonValue.ValueType.STRING) {
+                graphType = graphType(((JsonString) graphNode).getString());
+            }
+            return new SimpleCollation(witnesses, collationAlgorithm, joined, graphType);
         }
     }
 
+    static GraphType graphType(String type) throws IOException {
+        switch (type.toLowerCase()) {
+            case "":
+            case "default":
+                return GraphType.DEFAULT;
+            case "compact":
+                return GraphType.COMPACT;
+            case "mapped":
+                return GraphType.MAPPED;
+            default:
+                throw new IOException(String.format("Unknown variant graph type '%s'", type));
+        }
+    }
+
+    /**
+     * The variant graph implementations to collate into, whose heap size can be estimated before a graph is created.
+     */
+    enum GraphType implements Supplier<VariantGraph> {
+        DEFAULT {
+            @Override
+            public VariantGraph get() {
+                return new VariantGraph();
+            }
+
+            @Override
+            long estimateHeapSize(long vertices, long edges, long tokens) {
+                return VariantGraph.heapSize(vertices, edges, tokens);
+            }
+        },
+        COMPACT {
+            @Override
+            public VariantGraph get() {
+                return new CompactVariantGraph();
+            }
+
+            @Override
+            long estimateHeapSize(long vertices, long edges, long tokens) {
+                return CompactVariantGraph.heapSize(vertices, edges, tokens);
+            }
+        },
+        /**
+         * Graphs stored in a temporary directory, which is to be {@link MappedVariantGraph#delete() deleted} eventually.
+         */
+        MAPPED {
+            @Override
+            public VariantGraph get() {
+                try {
+                    return new MappedVariantGraph(Files.createTempDirectory("collatex-graph"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            long estimateHeapSize(long vertices, long edges, long tokens) {
+                return MappedVariantGraph.heapSize(vertices, edges, tokens);
+            }
+        };
+
+        /**
+         * @see VariantGraph#estimateHeapSize(long, long, long)
+         */
+        abstract long estimateHeapSize(long vertices, long edges, long tokens);
+    }
+
     public static void write(VariantGraph graph, OutputStream outputStream) throws IOException {
         try (final JsonGenerator jgen = Json.createGenerator(outputStream)) {
             write(jgen, graph);